@@ -16,6 +16,7 @@ import java.util.Locale;
 import cn.qqtheme.framework.icons.ColorPickerIcon;
 import cn.qqtheme.framework.popup.ConfirmPopup;
 import cn.qqtheme.framework.util.ConvertUtils;
+import cn.qqtheme.framework.util.IconCache;
 import cn.qqtheme.framework.widget.ColorPanelView;
 import cn.qqtheme.framework.widget.StrokeTextView;
 
@@ -77,7 +78,7 @@ public class ColorPicker extends ConfirmPopup<LinearLayout> {
         multiColorView = new ColorPanelView(activity);
         multiColorView.setId(MULTI_ID);
         multiColorView.setLayoutParams(new LinearLayout.LayoutParams(MATCH_PARENT, 0, 1.0f));
-        Drawable cursorTopDrawable = ConvertUtils.toDrawable(ColorPickerIcon.getCursorTop());
+        Drawable cursorTopDrawable = IconCache.getDrawable(ColorPickerIcon.getCursorTop());
         multiColorView.setPointerDrawable(cursorTopDrawable);
         multiColorView.setOnColorChangedListener(new ColorPanelView.OnColorChangedListener() {
             @Override
@@ -90,7 +91,7 @@ public class ColorPicker extends ConfirmPopup<LinearLayout> {
         blackColorView = new ColorPanelView(activity);
         blackColorView.setId(BLACK_ID);
         blackColorView.setLayoutParams(new LinearLayout.LayoutParams(MATCH_PARENT, ConvertUtils.toPx(activity, 30)));
-        Drawable cursorBottomDrawable = ConvertUtils.toDrawable(ColorPickerIcon.getCursorBottom());
+        Drawable cursorBottomDrawable = IconCache.getDrawable(ColorPickerIcon.getCursorBottom());
         blackColorView.setPointerDrawable(cursorBottomDrawable);
         blackColorView.setOnColorChangedListener(new ColorPanelView.OnColorChangedListener() {
             @Override
@@ -8,9 +8,9 @@ import android.graphics.ComposeShader;
 import android.graphics.LinearGradient;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
+import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Shader;
-import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Parcel;
 import android.os.Parcelable;
@@ -18,8 +18,13 @@ import android.util.AttributeSet;
 import android.view.MotionEvent;
 import android.view.View;
 
+import cn.qqtheme.framework.util.IconCache;
+
 /**
  * 颜色选择面板，参见：https://github.com/jbruchanov/AndroidColorPicker
+ * <p>
+ * 色相饱和度面板绘制到位图中，从窗口移除时释放；亮度条为所选颜色上叠加透明到黑的渐变，
+ * 拖动时只重绘指针移动前后所在的区域。
  *
  * @author 李玉江[QQ:1023694760]
  * @since 2015/7/20
@@ -27,17 +32,22 @@ import android.view.View;
 public class ColorPanelView extends View {
     private static final int[] GRAD_COLORS = new int[]{Color.RED, Color.YELLOW, Color.GREEN, Color.CYAN, Color.BLUE, Color.MAGENTA, Color.RED};
     private static final int[] GRAD_ALPHA = new int[]{Color.WHITE, Color.TRANSPARENT};
+    private static final int[] GRAD_BRIGHTNESS = new int[]{Color.TRANSPARENT, Color.BLACK};
 
     private ColorPanelView mBrightnessGradientView;
     private Shader mShader;
+    private Bitmap mPanelBitmap;
     private Drawable mPointerDrawable;
     private Paint mPaint;
-    private Paint mPaintBackground;
+    private Paint mBrightnessPaint;
     private RectF mGradientRect = new RectF();
+    private Rect mPointerRect = new Rect();
+    private Rect mDirtyRect = new Rect();
+    private float mPointerLeft;
+    private float mPointerTop;
 
     private float[] mHSV = new float[]{1f, 1f, 1f};
 
-    private int[] mSelectedColorGradient = new int[]{0, Color.BLACK};
     private float mRadius = 0;
     private int mSelectedColor = 0;
     private boolean mIsBrightnessGradient = false;
@@ -71,9 +81,7 @@ public class ColorPanelView extends View {
     private void init() {
         setClickable(true);
         mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        mPaintBackground = new Paint(Paint.ANTI_ALIAS_FLAG);
-        mPaintBackground.setColor(Color.WHITE);
-        setLayerType(View.LAYER_TYPE_SOFTWARE, isInEditMode() ? null : mPaint);
+        mBrightnessPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
     }
 
     @Override
@@ -126,9 +134,19 @@ public class ColorPanelView extends View {
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        if (mShader != null) {
-            canvas.drawRoundRect(mGradientRect, mRadius, mRadius, mPaintBackground);
-            canvas.drawRoundRect(mGradientRect, mRadius, mRadius, mPaint);
+        if (mIsBrightnessGradient) {
+            if (mShader != null) {
+                canvas.drawRoundRect(mGradientRect, mRadius, mRadius, mPaint);
+                canvas.drawRoundRect(mGradientRect, mRadius, mRadius, mBrightnessPaint);
+            }
+        } else {
+            if (mPanelBitmap == null) {
+                //从窗口移除时已释放，重新添加后可能不会再次布局
+                buildPanelBitmap();
+            }
+            if (mPanelBitmap != null) {
+                canvas.drawBitmap(mPanelBitmap, mGradientRect.left, mGradientRect.top, null);
+            }
         }
 
         onDrawPointer(canvas);
@@ -136,6 +154,28 @@ public class ColorPanelView extends View {
     }
 
     private void onDrawPointer(Canvas canvas) {
+        if (mPointerDrawable != null) {
+            updatePointerBounds();
+            canvas.translate(mPointerLeft, mPointerTop);
+            mPointerDrawable.draw(canvas);
+            canvas.translate(-mPointerLeft, -mPointerTop);
+        }
+    }
+
+    /**
+     * 只重绘指针移动前后所在的区域
+     */
+    private void invalidatePointer() {
+        if (mPointerDrawable == null) {
+            return;
+        }
+        mDirtyRect.set(mPointerRect);
+        updatePointerBounds();
+        mDirtyRect.union(mPointerRect);
+        invalidate(mDirtyRect);
+    }
+
+    private void updatePointerBounds() {
         if (mPointerDrawable != null) {
             int vh = getHeight();
             int pwh = mPointerWidth >> 1;
@@ -163,9 +203,10 @@ public class ColorPanelView extends View {
                     ty = Math.max(mGradientRect.top - pwh, Math.min(ty, mGradientRect.bottom - phh));
                 }
             }
-            canvas.translate(tx, ty);
-            mPointerDrawable.draw(canvas);
-            canvas.translate(-tx, -ty);
+            mPointerLeft = tx;
+            mPointerTop = ty;
+            mPointerRect.set((int) Math.floor(tx), (int) Math.floor(ty),
+                    (int) Math.ceil(tx) + mPointerWidth, (int) Math.ceil(ty) + mPointerHeight);
         }
     }
 
@@ -192,21 +233,73 @@ public class ColorPanelView extends View {
         }
     }
 
+    /**
+     * 尺寸或圆角变化后才需要重新构建
+     */
     private void buildShader() {
         if (mIsBrightnessGradient) {
-            mShader = new LinearGradient(mGradientRect.left, mGradientRect.top, mGradientRect.right, mGradientRect.top, mSelectedColorGradient, null, Shader.TileMode.CLAMP);
+            //所选颜色上叠加透明到黑的渐变即为所选颜色到黑的渐变，颜色变化时只需更换底色
+            mShader = new LinearGradient(mGradientRect.left, mGradientRect.top, mGradientRect.right, mGradientRect.top, GRAD_BRIGHTNESS, null, Shader.TileMode.CLAMP);
+            mBrightnessPaint.setShader(mShader);
+            updateBrightnessTint();
+        } else {
+            buildPanelBitmap();
+        }
+    }
+
+    private void updateBrightnessTint() {
+        mPaint.setColor(getColorForGradient(mHSV));
+    }
+
+    /**
+     * 绘制色相饱和度面板，尺寸不变时复用原位图（ComposeShader须软件绘制，故画到位图中）
+     */
+    private void buildPanelBitmap() {
+        int width = (int) mGradientRect.width();
+        int height = (int) mGradientRect.height();
+        if (width <= 0 || height <= 0) {
+            releasePanelBitmap();
+            return;
+        }
+        if (mPanelBitmap != null && mPanelBitmap.getWidth() == width && mPanelBitmap.getHeight() == height) {
+            mPanelBitmap.eraseColor(Color.TRANSPARENT);
         } else {
-            LinearGradient gradientShader = new LinearGradient(mGradientRect.left, mGradientRect.top, mGradientRect.right, mGradientRect.top, GRAD_COLORS, null, Shader.TileMode.CLAMP);
-            LinearGradient alphaShader = new LinearGradient(0, mGradientRect.top + (mGradientRect.height() / 3), 0, mGradientRect.bottom, GRAD_ALPHA, null, Shader.TileMode.CLAMP);
-            mShader = new ComposeShader(alphaShader, gradientShader, PorterDuff.Mode.MULTIPLY);
+            releasePanelBitmap();
+            mPanelBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        Canvas canvas = new Canvas(mPanelBitmap);
+        RectF rect = new RectF(0, 0, width, height);
+        Paint background = new Paint(Paint.ANTI_ALIAS_FLAG);
+        background.setColor(Color.WHITE);
+        canvas.drawRoundRect(rect, mRadius, mRadius, background);
+        LinearGradient gradientShader = new LinearGradient(0, 0, width, 0, GRAD_COLORS, null, Shader.TileMode.CLAMP);
+        LinearGradient alphaShader = new LinearGradient(0, height / 3f, 0, height, GRAD_ALPHA, null, Shader.TileMode.CLAMP);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setShader(new ComposeShader(alphaShader, gradientShader, PorterDuff.Mode.MULTIPLY));
+        canvas.drawRoundRect(rect, mRadius, mRadius, paint);
+    }
+
+    private void releasePanelBitmap() {
+        if (mPanelBitmap != null) {
+            mPanelBitmap.recycle();
+            mPanelBitmap = null;
         }
-        mPaint.setShader(mShader);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        //面板位图较大，不显示时不占用内存，再次绘制时重新生成
+        releasePanelBitmap();
     }
 
     public void setRadius(float radius) {
         // fixed: 17-1-7  Equality tests should not be made with floating point values.
         if ((int) radius != (int) mRadius) {
             mRadius = radius;
+            if (mShader != null || mPanelBitmap != null) {
+                buildShader();
+            }
             invalidate();
         }
     }
@@ -216,7 +309,7 @@ public class ColorPanelView extends View {
         mLastX = (int) event.getX();
         mLastY = (int) event.getY();
         onUpdateColorSelection(mLastX, mLastY);
-        invalidate();
+        invalidatePointer();
         switch (event.getAction()) {
             case MotionEvent.ACTION_DOWN:
                 getParent().requestDisallowInterceptTouchEvent(true);
@@ -282,9 +375,8 @@ public class ColorPanelView extends View {
     protected void setColor(int selectedColor, boolean updatePointers) {
         Color.colorToHSV(selectedColor, mHSV);
         if (mIsBrightnessGradient) {
-            mSelectedColorGradient[0] = getColorForGradient(mHSV);
             mSelectedColor = Color.HSVToColor(mHSV);
-            buildShader();
+            updateBrightnessTint();
             if (mLastX != Integer.MIN_VALUE) {
                 mHSV[2] = pointToValueBrightness(mLastX);
             }
@@ -294,7 +386,12 @@ public class ColorPanelView extends View {
             updatePointerPosition();
         }
         mSelectedColor = selectedColor;
-        invalidate();
+        if (mIsBrightnessGradient) {
+            //整个亮度条的颜色都变了
+            invalidate();
+        } else {
+            invalidatePointer();
+        }
         dispatchColorChanged(mSelectedColor);
     }
 
@@ -367,13 +464,10 @@ public class ColorPanelView extends View {
 
     public void recycle() {
         mPaint = null;
-        mPaintBackground = null;
-        if (mPointerDrawable instanceof BitmapDrawable) {
-            Bitmap bitmap = ((BitmapDrawable) mPointerDrawable).getBitmap();
-            if (null != bitmap && !bitmap.isRecycled()) {
-                bitmap.recycle();
-            }
-        }
+        mBrightnessPaint = null;
+        releasePanelBitmap();
+        //内置指针图标由所有选择器共享，不能回收
+        IconCache.recycleUnshared(mPointerDrawable);
     }
 
     public void setLockPointerInBounds(boolean lockPointerInBounds) {
@@ -396,8 +396,7 @@ public abstract class ConfirmPopup<V extends View> extends BasicPopup<View> {
         submitButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                dismiss();
-                onSubmit();
+                onSubmitClick();
             }
         });
         topButtonLayout.addView(submitButton);
@@ -416,6 +415,15 @@ public abstract class ConfirmPopup<V extends View> extends BasicPopup<View> {
         return null;
     }
 
+    /**
+     * 点击确定按钮，默认关闭弹窗后调用{@link #onSubmit()}，
+     * 子类可重写以便在关闭前校验，校验不通过时不关闭也不提交
+     */
+    protected void onSubmitClick() {
+        dismiss();
+        onSubmit();
+    }
+
     protected void onSubmit() {
 
     }
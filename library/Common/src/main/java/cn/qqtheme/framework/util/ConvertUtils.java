@@ -26,11 +26,9 @@ import android.view.View;
 import android.widget.ListView;
 import android.widget.ScrollView;
 
-import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.text.DecimalFormat;
@@ -242,27 +240,21 @@ public class ConvertUtils {
         return sb.toString();
     }
 
+    /**
+     * 读取流的全部内容并关闭流
+     *
+     * @see IOUtils#readFully(InputStream)
+     */
     public static byte[] toByteArray(InputStream is) {
         if (is == null) {
             return null;
         }
         try {
-            ByteArrayOutputStream os = new ByteArrayOutputStream();
-            byte[] buff = new byte[100];
-            while (true) {
-                int len = is.read(buff, 0, 100);
-                if (len == -1) {
-                    break;
-                } else {
-                    os.write(buff, 0, len);
-                }
-            }
-            byte[] bytes = os.toByteArray();
-            os.close();
-            is.close();
-            return bytes;
+            return IOUtils.readFully(is);
         } catch (IOException e) {
             LogUtils.warn(e);
+        } finally {
+            IOUtils.closeSilently(is);
         }
         return null;
     }
@@ -537,24 +529,18 @@ public class ConvertUtils {
         return fileSizeString;
     }
 
+    /**
+     * 按指定编码一次解码流的全部内容并关闭流，换行符保持原样
+     */
     public static String toString(InputStream is, String charset) {
-        StringBuilder sb = new StringBuilder();
         try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(is, charset));
-            while (true) {
-                String line = reader.readLine();
-                if (line == null) {
-                    break;
-                } else {
-                    sb.append(line).append("\n");
-                }
-            }
-            reader.close();
-            is.close();
+            return IOUtils.readString(is, charset);
         } catch (IOException e) {
             LogUtils.error(e);
+        } finally {
+            IOUtils.closeSilently(is);
         }
-        return sb.toString();
+        return "";
     }
 
     public static String toString(InputStream is) {
@@ -10,6 +10,7 @@ import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 
@@ -24,6 +25,20 @@ public class DateUtils extends android.text.format.DateUtils {
     public static final int Minute = 1;
     public static final int Hour = 2;
     public static final int Day = 3;
+    private static final String[] ZERO_FILLED_NUMBERS = new String[100];
+    //SimpleDateFormat非线程安全，每个线程缓存一份已编译的格式
+    private static final ThreadLocal<HashMap<String, SimpleDateFormat>> DATE_FORMATS = new ThreadLocal<HashMap<String, SimpleDateFormat>>() {
+        @Override
+        protected HashMap<String, SimpleDateFormat> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    static {
+        for (int i = 0; i < ZERO_FILLED_NUMBERS.length; i++) {
+            ZERO_FILLED_NUMBERS[i] = i < 10 ? "0" + i : String.valueOf(i);
+        }
+    }
 
     @IntDef(value = {Second, Minute, Hour, Day})
     @Retention(RetentionPolicy.SOURCE)
@@ -145,7 +160,10 @@ public class DateUtils extends android.text.format.DateUtils {
      */
     @NonNull
     public static String fillZero(int number) {
-        return number < 10 ? "0" + number : "" + number;
+        if (number >= 0 && number < ZERO_FILLED_NUMBERS.length) {
+            return ZERO_FILLED_NUMBERS[number];
+        }
+        return number < 10 ? "0" + number : String.valueOf(number);
     }
 
     /**
@@ -154,6 +172,22 @@ public class DateUtils extends android.text.format.DateUtils {
      * @see #fillZero(int)
      */
     public static int trimZero(@NonNull String text) {
+        int length = text.length();
+        if (length > 0 && length < 10) {
+            //纯数字直接累加，免去截取及解析的开销
+            int number = 0;
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    number = -1;
+                    break;
+                }
+                number = number * 10 + (c - '0');
+            }
+            if (number >= 0) {
+                return number;
+            }
+        }
         try {
             if (text.startsWith("0")) {
                 text = text.substring(1);
@@ -193,8 +227,7 @@ public class DateUtils extends android.text.format.DateUtils {
      */
     public static Date parseDate(String dateStr, String dataFormat) {
         try {
-            SimpleDateFormat dateFormat = new SimpleDateFormat(dataFormat, Locale.PRC);
-            Date date = dateFormat.parse(dateStr);
+            Date date = getDateFormat(dataFormat).parse(dateStr);
             return new Date(date.getTime());
         } catch (ParseException e) {
             LogUtils.warn(e);
@@ -216,8 +249,7 @@ public class DateUtils extends android.text.format.DateUtils {
      * 将指定的日期转换为一定格式的字符串
      */
     public static String formatDate(Date date, String format) {
-        SimpleDateFormat sdf = new SimpleDateFormat(format, Locale.PRC);
-        return sdf.format(date);
+        return getDateFormat(format).format(date);
     }
 
     /**
@@ -227,4 +259,17 @@ public class DateUtils extends android.text.format.DateUtils {
         return formatDate(Calendar.getInstance(Locale.CHINA).getTime(), format);
     }
 
+    /**
+     * 获取当前线程缓存的日期格式，同一格式只编译一次
+     */
+    private static SimpleDateFormat getDateFormat(String format) {
+        HashMap<String, SimpleDateFormat> formats = DATE_FORMATS.get();
+        SimpleDateFormat dateFormat = formats.get(format);
+        if (dateFormat == null) {
+            dateFormat = new SimpleDateFormat(format, Locale.PRC);
+            formats.put(format, dateFormat);
+        }
+        return dateFormat;
+    }
+
 }
@@ -0,0 +1,134 @@
+package cn.qqtheme.framework.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * 批量读取：已知长度时按长度一次分配缓冲区，较大的文件使用内存映射，
+ * 文本按原始字节一次解码，不改变换行符
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @since 2018/10/24
+ */
+public class IOUtils {
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final long MAP_THRESHOLD = 256 * 1024;//超过此长度的文件使用内存映射
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * 读取文件的全部内容，按文件长度一次分配
+     */
+    public static byte[] readFile(File file) throws IOException {
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            FileChannel channel = fis.getChannel();
+            long length = channel.size();
+            if (length > MAX_ARRAY_SIZE) {
+                throw new IOException("File too large: " + file);
+            }
+            if (length >= MAP_THRESHOLD) {
+                //直接从页缓存复制，不经过逐块的read调用
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                byte[] data = new byte[(int) length];
+                buffer.get(data);
+                return data;
+            }
+            return readFully(fis, (int) length);
+        } finally {
+            closeSilently(fis);
+        }
+    }
+
+    /**
+     * 将文件只读映射到内存，可直接按{@link java.nio.ByteBuffer}访问而不复制到Java堆中
+     */
+    public static MappedByteBuffer mapFile(File file) throws IOException {
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            FileChannel channel = fis.getChannel();
+            //关闭通道后映射仍然有效
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            closeSilently(fis);
+        }
+    }
+
+    /**
+     * 读取流的全部内容，以{@link InputStream#available()}预估长度（如文件及assets），不关闭流
+     */
+    public static byte[] readFully(InputStream is) throws IOException {
+        return readFully(is, is.available());
+    }
+
+    /**
+     * 读取流的全部内容，按预估长度分配缓冲区，实际更长时再扩容，不关闭流
+     *
+     * @param expectedLength 预估长度，未知时传0
+     */
+    public static byte[] readFully(InputStream is, int expectedLength) throws IOException {
+        byte[] buffer = new byte[expectedLength > 0 ? expectedLength : BUFFER_SIZE];
+        int count = 0;
+        while (true) {
+            if (count == buffer.length) {
+                if (count == expectedLength) {
+                    //长度恰好如预估时，读一个字节确认已到末尾，避免不必要的扩容
+                    int b = is.read();
+                    if (b == -1) {
+                        return buffer;
+                    }
+                    buffer = grow(buffer, count + 1);
+                    buffer[count++] = (byte) b;
+                    continue;
+                }
+                buffer = grow(buffer, count + 1);
+            }
+            int len = is.read(buffer, count, buffer.length - count);
+            if (len == -1) {
+                break;
+            }
+            count += len;
+        }
+        return count == buffer.length ? buffer : Arrays.copyOf(buffer, count);
+    }
+
+    /**
+     * 按指定编码一次解码全部内容，保留原有的换行符
+     */
+    public static String readString(InputStream is, String charset) throws IOException {
+        return decode(readFully(is), charset);
+    }
+
+    /**
+     * 按指定编码一次解码
+     */
+    public static String decode(byte[] data, String charset) throws UnsupportedEncodingException {
+        return new String(data, charset);
+    }
+
+    public static void closeSilently(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            LogUtils.warn(e);
+        }
+    }
+
+    private static byte[] grow(byte[] buffer, int minCapacity) throws IOException {
+        if (minCapacity > MAX_ARRAY_SIZE) {
+            throw new IOException("Stream too large");
+        }
+        int capacity = buffer.length < MAX_ARRAY_SIZE / 2 ? buffer.length * 2 : MAX_ARRAY_SIZE;
+        return Arrays.copyOf(buffer, Math.max(capacity, minCapacity));
+    }
+
+}
@@ -0,0 +1,71 @@
+package cn.qqtheme.framework.util;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+
+import java.util.IdentityHashMap;
+
+/**
+ * 内置图标（如FilePickerIcon、ColorPickerIcon中的PNG字节数组）的进程内缓存，
+ * 每个图标只解码一次，解码出的位图不可变，由所有选择器共享，因此不能回收。
+ * 每次返回新的Drawable以免共享边界等状态，Drawable本身只是位图的轻量包装。
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @since 2018/10/25
+ */
+public class IconCache {
+    //以数组本身为键，内置图标的字节数组均为常量
+    private static final IdentityHashMap<byte[], Bitmap> BITMAPS = new IdentityHashMap<>();
+
+    /**
+     * 获取解码后的共享位图，与{@link ConvertUtils#toBitmap(byte[])}的密度一致
+     */
+    public static synchronized Bitmap getBitmap(byte[] png) {
+        Bitmap bitmap = BITMAPS.get(png);
+        if (bitmap == null || bitmap.isRecycled()) {
+            bitmap = ConvertUtils.toBitmap(png);
+            if (bitmap == null) {
+                return null;
+            }
+            LogUtils.verbose("decode built-in icon: " + bitmap.getWidth() + "x" + bitmap.getHeight());
+            BITMAPS.put(png, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * 获取包装共享位图的Drawable，可替代{@link ConvertUtils#toDrawable(byte[])}
+     */
+    public static Drawable getDrawable(byte[] png) {
+        return ConvertUtils.toDrawable(getBitmap(png));
+    }
+
+    /**
+     * 位图是否为缓存中共享的图标
+     */
+    public static synchronized boolean isShared(Bitmap bitmap) {
+        return bitmap != null && BITMAPS.containsValue(bitmap);
+    }
+
+    /**
+     * 回收Drawable中的位图，共享的内置图标除外
+     */
+    public static void recycleUnshared(Drawable drawable) {
+        if (!(drawable instanceof BitmapDrawable)) {
+            return;
+        }
+        Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+        if (null != bitmap && !bitmap.isRecycled() && !isShared(bitmap)) {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * 清空缓存，如内存不足时，已共享出去的位图仍由其使用者持有，不会被回收
+     */
+    public static synchronized void clear() {
+        BITMAPS.clear();
+    }
+
+}
@@ -0,0 +1,26 @@
+package cn.qqtheme.framework.util;
+
+/**
+ * 当前时间的来源，默认为系统时间，可替换为固定的时间以便测试
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @since 2018/10/20
+ */
+public interface TimeSource {
+
+    /**
+     * 系统时间
+     */
+    TimeSource SYSTEM = new TimeSource() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    /**
+     * 当前时间的毫秒数
+     */
+    long currentTimeMillis();
+
+}
@@ -1,10 +1,9 @@
 package cn.qqtheme.framework.adapter;
 
 import android.content.Context;
-import android.graphics.Bitmap;
 import android.graphics.Color;
-import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.AsyncTask;
 import android.view.Gravity;
 import android.view.View;
 import android.view.ViewGroup;
@@ -15,14 +14,25 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import java.io.File;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Future;
 
 import cn.qqtheme.framework.drawable.StateColorDrawable;
+import cn.qqtheme.framework.entity.FileEntry;
+import cn.qqtheme.framework.entity.FileEntryStore;
 import cn.qqtheme.framework.entity.FileItem;
 import cn.qqtheme.framework.icons.FilePickerIcon;
 import cn.qqtheme.framework.util.CompatUtils;
 import cn.qqtheme.framework.util.ConvertUtils;
+import cn.qqtheme.framework.util.DirectoryCache;
+import cn.qqtheme.framework.util.FileSearcher;
 import cn.qqtheme.framework.util.FileUtils;
+import cn.qqtheme.framework.util.FolderSizeCalculator;
+import cn.qqtheme.framework.util.IconCache;
 import cn.qqtheme.framework.util.LogUtils;
 
 /**
@@ -35,7 +45,8 @@ import cn.qqtheme.framework.util.LogUtils;
 public class FileAdapter extends BaseAdapter {
     public static final String DIR_ROOT = ".";
     public static final String DIR_PARENT = "..";
-    private ArrayList<FileItem> data = new ArrayList<FileItem>();
+    private ArrayList<FileItem> headers = new ArrayList<FileItem>();//“返回主目录”及“返回上一级”
+    private FileEntryStore entries = new FileEntryStore();//目录下的文件及子目录，按列紧凑存储
     private String rootPath = null;
     private String currentPath = null;
     private String[] allowExtensions = null;//允许的扩展名
@@ -43,11 +54,21 @@ public class FileAdapter extends BaseAdapter {
     private boolean showHomeDir = false;//是否显示返回主目录
     private boolean showUpDir = true;//是否显示返回上一级
     private boolean showHideDir = true;//是否显示隐藏的目录（以“.”开头）
+    private boolean showFolderSize = false;//是否计算并显示目录大小
     private int itemHeight = 40;// dp
     private Drawable homeIcon = null;
     private Drawable upIcon = null;
     private Drawable folderIcon = null;
     private Drawable fileIcon = null;
+    private LoadTask loadTask;
+    private FileSearcher searcher;
+    private OnLoadListener onLoadListener;
+    private DirectoryCache directoryCache = null;
+    private HashMap<String, Future<?>> sizeTasks = new HashMap<>();//正在计算的目录大小
+    //以下按列表下标记录，列表只追加或整体清空，下标不会变化
+    private BitSet requestedSizes = new BitSet();//已请求计算大小的目录
+    private BitSet loadedSizes = new BitSet();//大小已计算完成的目录
+    private BitSet partialSizes = new BitSet();//超过深度或耗时上限而不完整的目录大小
 
     public FileAdapter() {
         super();
@@ -80,6 +101,10 @@ public class FileAdapter extends BaseAdapter {
         this.allowExtensions = allowExtensions;
     }
 
+    public String[] getAllowExtensions() {
+        return allowExtensions;
+    }
+
     /**
      * 是否仅仅读取目录
      */
@@ -124,33 +149,132 @@ public class FileAdapter extends BaseAdapter {
         return showHideDir;
     }
 
+    /**
+     * 是否计算并显示目录大小，只计算显示到的目录，结果逐个刷新到列表
+     *
+     * @see FolderSizeCalculator
+     */
+    public void setShowFolderSize(boolean showFolderSize) {
+        this.showFolderSize = showFolderSize;
+    }
+
+    public boolean isShowFolderSize() {
+        return showFolderSize;
+    }
+
     public void setItemHeight(int itemHeight) {
         this.itemHeight = itemHeight;
     }
 
+    public void setOnLoadListener(OnLoadListener onLoadListener) {
+        this.onLoadListener = onLoadListener;
+    }
+
+    /**
+     * 设置目录列表缓存，如{@link DirectoryCache#getDefault()}，默认为null即每次都重新遍历目录。
+     * {@link cn.qqtheme.framework.picker.FilePicker}默认使用进程内共享的缓存
+     */
+    public void setDirectoryCache(DirectoryCache directoryCache) {
+        this.directoryCache = directoryCache;
+    }
+
+    /**
+     * 是否正在后台加载目录或搜索
+     */
+    public boolean isLoading() {
+        return loadTask != null || searcher != null;
+    }
+
+    /**
+     * 取消正在进行的目录加载或搜索
+     */
+    public void cancelLoading() {
+        if (loadTask != null) {
+            LogUtils.verbose(this, "cancel loading: " + loadTask.path);
+            loadTask.cancel(true);
+            loadTask = null;
+        }
+        if (searcher != null) {
+            LogUtils.verbose(this, "cancel searching: " + searcher.getRootPath());
+            searcher.cancel();
+            searcher = null;
+        }
+    }
+
+    /**
+     * 以搜索结果替换列表，结果逐批添加，加载监听同样会被回调
+     */
+    public void search(final FileSearcher fileSearcher) {
+        if (folderIcon == null) {
+            folderIcon = IconCache.getDrawable(FilePickerIcon.getFOLDER());
+        }
+        if (fileIcon == null) {
+            fileIcon = IconCache.getDrawable(FilePickerIcon.getFILE());
+        }
+        final String path = fileSearcher.getRootPath();
+        LogUtils.verbose("search directory path: " + path);
+        currentPath = path;
+        cancelLoading();
+        cancelFolderSizes();
+        headers.clear();
+        entries.clear();
+        notifyDataSetChanged();
+        if (onLoadListener != null) {
+            onLoadListener.onLoadStarted(path);
+        }
+        fileSearcher.setOnSearchListener(new FileSearcher.OnSearchListener() {
+            @Override
+            public void onSearchFound(List<FileEntry> found) {
+                if (searcher != fileSearcher) {
+                    return;
+                }
+                for (FileEntry entry : found) {
+                    entries.add(entry);
+                }
+                notifyDataSetChanged();
+            }
+
+            @Override
+            public void onSearchFinished(int count) {
+                if (searcher != fileSearcher) {
+                    return;
+                }
+                searcher = null;
+                if (onLoadListener != null) {
+                    onLoadListener.onLoadFinished(path, count);
+                }
+            }
+        });
+        searcher = fileSearcher;
+        fileSearcher.start();
+    }
+
     public void loadData(String path) {
         if (path == null) {
             LogUtils.warn("current directory is null");
             return;
         }
         if (homeIcon == null) {
-            homeIcon = ConvertUtils.toDrawable(FilePickerIcon.getHOME());
+            homeIcon = IconCache.getDrawable(FilePickerIcon.getHOME());
         }
         if (upIcon == null) {
-            upIcon = ConvertUtils.toDrawable(FilePickerIcon.getUPDIR());
+            upIcon = IconCache.getDrawable(FilePickerIcon.getUPDIR());
         }
         if (folderIcon == null) {
-            folderIcon = ConvertUtils.toDrawable(FilePickerIcon.getFOLDER());
+            folderIcon = IconCache.getDrawable(FilePickerIcon.getFOLDER());
         }
         if (fileIcon == null) {
-            fileIcon = ConvertUtils.toDrawable(FilePickerIcon.getFILE());
+            fileIcon = IconCache.getDrawable(FilePickerIcon.getFILE());
         }
-        ArrayList<FileItem> datas = new ArrayList<FileItem>();
         if (rootPath == null) {
             rootPath = path;
         }
         LogUtils.verbose("current directory path: " + path);
         currentPath = path;
+        cancelLoading();
+        cancelFolderSizes();
+        headers.clear();
+        entries.clear();
         if (showHomeDir) {
             //添加“返回主目录”
             FileItem fileRoot = new FileItem();
@@ -159,7 +283,7 @@ public class FileAdapter extends BaseAdapter {
             fileRoot.setName(DIR_ROOT);
             fileRoot.setSize(0);
             fileRoot.setPath(rootPath);
-            datas.add(fileRoot);
+            headers.add(fileRoot);
         }
         if (showUpDir && !path.equals("/")) {
             //添加“返回上一级目录”
@@ -169,83 +293,92 @@ public class FileAdapter extends BaseAdapter {
             fileParent.setName(DIR_PARENT);
             fileParent.setSize(0);
             fileParent.setPath(new File(path).getParent());
-            datas.add(fileParent);
+            headers.add(fileParent);
         }
-        File[] files;
-        if (allowExtensions == null) {
-            if (onlyListDir) {
-                files = FileUtils.listDirs(currentPath);
-            } else {
-                files = FileUtils.listDirsAndFiles(currentPath);
-            }
-        } else {
-            if (onlyListDir) {
-                files = FileUtils.listDirs(currentPath, allowExtensions);
-            } else {
-                files = FileUtils.listDirsAndFiles(currentPath, allowExtensions);
-            }
-        }
-        if (files != null) {
-            for (File file : files) {
-                if (!showHideDir && file.getName().startsWith(".")) {
-                    continue;
-                }
-                FileItem fileItem = new FileItem();
-                boolean isDirectory = file.isDirectory();
-                fileItem.setDirectory(isDirectory);
-                if (isDirectory) {
-                    fileItem.setIcon(folderIcon);
-                    fileItem.setSize(0);
-                } else {
-                    fileItem.setIcon(fileIcon);
-                    fileItem.setSize(file.length());
-                }
-                fileItem.setName(file.getName());
-                fileItem.setPath(file.getAbsolutePath());
-                datas.add(fileItem);
-            }
-        }
-        data.clear();
-        data.addAll(datas);
         notifyDataSetChanged();
+        if (onLoadListener != null) {
+            onLoadListener.onLoadStarted(path);
+        }
+        //目录可能包含数万个文件，在后台列出，先添加目录再添加文件，避免阻塞界面
+        loadTask = new LoadTask(this, path);
+        loadTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
     }
 
     public void recycleData() {
-        data.clear();
-        if (homeIcon instanceof BitmapDrawable) {
-            Bitmap homeBitmap = ((BitmapDrawable) homeIcon).getBitmap();
-            if (null != homeBitmap && !homeBitmap.isRecycled()) {
-                homeBitmap.recycle();
-            }
-        }
-        if (upIcon instanceof BitmapDrawable) {
-            Bitmap upBitmap = ((BitmapDrawable) upIcon).getBitmap();
-            if (null != upBitmap && !upBitmap.isRecycled()) {
-                upBitmap.recycle();
+        cancelLoading();
+        cancelFolderSizes();
+        headers.clear();
+        entries.clear();
+        //内置图标由所有选择器共享，不能回收
+        IconCache.recycleUnshared(homeIcon);
+        IconCache.recycleUnshared(upIcon);
+        IconCache.recycleUnshared(folderIcon);
+        IconCache.recycleUnshared(fileIcon);
+    }
+
+    private void cancelFolderSizes() {
+        for (Future<?> future : sizeTasks.values()) {
+            if (future != null) {
+                future.cancel(true);
             }
         }
-        if (folderIcon instanceof BitmapDrawable) {
-            Bitmap folderBitmap = ((BitmapDrawable) folderIcon).getBitmap();
-            if (null != folderBitmap && !folderBitmap.isRecycled()) {
-                folderBitmap.recycle();
-            }
+        sizeTasks.clear();
+        requestedSizes.clear();
+        loadedSizes.clear();
+        partialSizes.clear();
+    }
+
+    /**
+     * 目录大小尚未计算时在后台计算，有缓存则直接使用
+     */
+    private void requestFolderSize(final int index, String path) {
+        FolderSizeCalculator calculator = FolderSizeCalculator.getDefault();
+        FolderSizeCalculator.FolderSize cached = calculator.getCached(path);
+        if (cached != null) {
+            setFolderSize(index, cached);
+            return;
         }
-        if (fileIcon instanceof BitmapDrawable) {
-            Bitmap fileBitmap = ((BitmapDrawable) fileIcon).getBitmap();
-            if (null != fileBitmap && !fileBitmap.isRecycled()) {
-                fileBitmap.recycle();
+        Future<?> future = calculator.calculate(path, new FolderSizeCalculator.OnSizeListener() {
+            @Override
+            public void onSizeCalculated(String dirPath, FolderSizeCalculator.FolderSize folderSize) {
+                if (sizeTasks.remove(dirPath) == null) {
+                    //已切换目录
+                    return;
+                }
+                //列表可能已变动，下标不再对应原目录则按路径查找
+                int current = entries.indexOf(dirPath, index);
+                if (current != -1) {
+                    setFolderSize(current, folderSize);
+                    notifyDataSetChanged();
+                }
             }
-        }
+        });
+        sizeTasks.put(path, future);
     }
 
     @Override
     public int getCount() {
-        return data.size();
+        return headers.size() + entries.size();
     }
 
+    /**
+     * 目录下的文件及子目录按需生成，不要长期持有
+     */
     @Override
     public FileItem getItem(int position) {
-        return data.get(position);
+        int headerCount = headers.size();
+        if (position < headerCount) {
+            return headers.get(position);
+        }
+        int index = position - headerCount;
+        boolean isDirectory = entries.isDirectory(index);
+        FileItem fileItem = new FileItem();
+        fileItem.setDirectory(isDirectory);
+        fileItem.setIcon(isDirectory ? folderIcon : fileIcon);
+        fileItem.setSize(entries.getSize(index));
+        fileItem.setName(entries.getName(index));
+        fileItem.setPath(entries.getPath(index));
+        return fileItem;
     }
 
     @Override
@@ -280,30 +413,177 @@ public class FileAdapter extends BaseAdapter {
             layout.addView(imageView);
 
             TextView textView = new TextView(context);
-            LinearLayout.LayoutParams tvParams = new LinearLayout.LayoutParams(matchParent, matchParent);
+            LinearLayout.LayoutParams tvParams = new LinearLayout.LayoutParams(0, matchParent, 1);
             tvParams.leftMargin = ConvertUtils.toPx(context, 10);
             textView.setLayoutParams(tvParams);
             textView.setGravity(Gravity.START | Gravity.CENTER_VERTICAL);
             textView.setSingleLine();
             layout.addView(textView);
 
+            TextView sizeView = new TextView(context);
+            LinearLayout.LayoutParams svParams = new LinearLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, matchParent);
+            svParams.leftMargin = ConvertUtils.toPx(context, 10);
+            sizeView.setLayoutParams(svParams);
+            sizeView.setGravity(Gravity.END | Gravity.CENTER_VERTICAL);
+            sizeView.setTextColor(Color.GRAY);
+            sizeView.setSingleLine();
+            sizeView.setVisibility(View.GONE);
+            layout.addView(sizeView);
+
             convertView = layout;
             holder = new ViewHolder();
             holder.imageView = imageView;
             holder.textView = textView;
+            holder.sizeView = sizeView;
             convertView.setTag(holder);
         } else {
             holder = (ViewHolder) convertView.getTag();
         }
-        FileItem item = data.get(position);
-        holder.imageView.setImageDrawable(item.getIcon());
-        holder.textView.setText(item.getName());
+        int headerCount = headers.size();
+        if (position < headerCount) {
+            FileItem item = headers.get(position);
+            holder.imageView.setImageDrawable(item.getIcon());
+            holder.textView.setText(item.getName());
+            holder.sizeView.setVisibility(View.GONE);
+        } else {
+            //直接从共享的字符数组绑定名称，不创建FileItem及字符串
+            int index = position - headerCount;
+            boolean isDirectory = entries.isDirectory(index);
+            holder.imageView.setImageDrawable(isDirectory ? folderIcon : fileIcon);
+            holder.textView.setText(entries.getNameChars(), entries.getNameOffset(index), entries.getNameLength(index));
+            if (showFolderSize && isDirectory) {
+                bindFolderSize(holder.sizeView, index);
+            } else {
+                holder.sizeView.setVisibility(View.GONE);
+            }
+        }
         return convertView;
     }
 
+    private void setFolderSize(int index, FolderSizeCalculator.FolderSize folderSize) {
+        entries.setSize(index, folderSize.getSize());
+        loadedSizes.set(index);
+        if (!folderSize.isComplete()) {
+            partialSizes.set(index);
+        }
+    }
+
+    private void bindFolderSize(TextView sizeView, int index) {
+        if (!requestedSizes.get(index)) {
+            //每个目录只生成一次路径
+            requestedSizes.set(index);
+            requestFolderSize(index, entries.getPath(index));
+        }
+        if (loadedSizes.get(index)) {
+            String size = ConvertUtils.toFileSizeString(entries.getSize(index));
+            sizeView.setText(partialSizes.get(index) ? "≥" + size : size);
+            sizeView.setVisibility(View.VISIBLE);
+        } else {
+            sizeView.setVisibility(View.GONE);
+        }
+    }
+
     private static class ViewHolder {
         ImageView imageView;
         TextView textView;
+        TextView sizeView;
+    }
+
+    /**
+     * 后台列出目录，目录排好序即先发布到列表，再发布文件，每部分只刷新一次列表。
+     * 列出时直接存入紧凑的列表，不为每项保留对象
+     */
+    private static class LoadTask extends AsyncTask<Void, FileEntryStore, Integer> {
+        private WeakReference<FileAdapter> adapterReference;
+        private String path;
+        private String[] allowExtensions;
+        private boolean onlyListDir;
+        private boolean showHideDir;
+        private DirectoryCache directoryCache;
+
+        LoadTask(FileAdapter adapter, String path) {
+            this.adapterReference = new WeakReference<>(adapter);
+            this.path = path;
+            //在主线程中读取配置，后台不再访问适配器
+            this.allowExtensions = adapter.allowExtensions;
+            this.onlyListDir = adapter.onlyListDir;
+            this.showHideDir = adapter.showHideDir;
+            this.directoryCache = adapter.directoryCache;
+        }
+
+        @Override
+        protected Integer doInBackground(Void... params) {
+            FileEntryStore dirs = new FileEntryStore();
+            FileEntryStore files = new FileEntryStore();
+            boolean sorted = directoryCache != null;
+            if (sorted) {
+                //缓存的快照已排序，过滤后仍保持顺序
+                directoryCache.list(path, showHideDir, onlyListDir, allowExtensions, dirs, files);
+            } else {
+                //单次遍历目录，每项只读取一次属性
+                FileUtils.listEntries(path, showHideDir, onlyListDir, allowExtensions, dirs, files);
+            }
+            if (isCancelled()) {
+                return 0;
+            }
+            //目录通常远少于文件，先排序并显示目录，再处理文件
+            if (!sorted) {
+                FileUtils.sortEntries(dirs, FileUtils.BY_NAME_ASC);
+            }
+            if (dirs.size() > 0) {
+                publishProgress(dirs);
+            }
+            if (!sorted) {
+                FileUtils.sortEntries(files, FileUtils.BY_NAME_ASC);
+            }
+            if (isCancelled()) {
+                return dirs.size();
+            }
+            if (files.size() > 0) {
+                publishProgress(files);
+            }
+            return dirs.size() + files.size();
+        }
+
+        @Override
+        protected void onProgressUpdate(FileEntryStore... values) {
+            FileAdapter adapter = adapterReference.get();
+            if (adapter == null || adapter.loadTask != this) {
+                return;
+            }
+            adapter.entries.addAll(values[0]);
+            adapter.notifyDataSetChanged();
+        }
+
+        @Override
+        protected void onPostExecute(Integer count) {
+            FileAdapter adapter = adapterReference.get();
+            if (adapter == null || adapter.loadTask != this) {
+                return;
+            }
+            LogUtils.verbose(adapter, "loaded " + count + " items from " + path);
+            adapter.loadTask = null;
+            if (adapter.onLoadListener != null) {
+                adapter.onLoadListener.onLoadFinished(path, count);
+            }
+        }
+
+    }
+
+    public interface OnLoadListener {
+
+        /**
+         * 开始加载目录，此时列表仅包含“返回主目录”及“返回上一级”
+         */
+        void onLoadStarted(String path);
+
+        /**
+         * 目录加载完成
+         *
+         * @param count 目录下的文件及子目录个数，不包括“返回主目录”及“返回上一级”
+         */
+        void onLoadFinished(String path, int count);
+
     }
 
 }
@@ -1,8 +1,6 @@
 package cn.qqtheme.framework.adapter;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.view.Gravity;
 import android.view.View;
@@ -18,6 +16,7 @@ import java.util.LinkedList;
 
 import cn.qqtheme.framework.icons.FilePickerIcon;
 import cn.qqtheme.framework.util.ConvertUtils;
+import cn.qqtheme.framework.util.IconCache;
 
 /**
  * 文件路径数据适配
@@ -43,7 +42,7 @@ public class PathAdapter extends BaseAdapter {
 
     public void updatePath(String path) {
         if (arrowIcon == null) {
-            arrowIcon = ConvertUtils.toDrawable(FilePickerIcon.getARROW());
+            arrowIcon = IconCache.getDrawable(FilePickerIcon.getARROW());
         }
         paths.clear();
         if (!path.equals("/")) {
@@ -122,12 +121,8 @@ public class PathAdapter extends BaseAdapter {
 
     public void recycleData() {
         paths.clear();
-        if (arrowIcon instanceof BitmapDrawable) {
-            Bitmap homeBitmap = ((BitmapDrawable) arrowIcon).getBitmap();
-            if (null != homeBitmap && !homeBitmap.isRecycled()) {
-                homeBitmap.recycle();
-            }
-        }
+        //内置图标由所有选择器共享，不能回收
+        IconCache.recycleUnshared(arrowIcon);
     }
 
     private static class ViewHolder {
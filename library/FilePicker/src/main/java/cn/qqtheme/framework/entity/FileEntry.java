@@ -0,0 +1,54 @@
+package cn.qqtheme.framework.entity;
+
+/**
+ * 目录列表中的一项，列出目录时一次性读取的名称、类型、大小及修改时间，
+ * 过滤、排序及生成{@link FileItem}时均复用这些属性而不再访问文件系统
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @see cn.qqtheme.framework.util.FileUtils#listEntries(String, boolean)
+ * @since 2018/10/20
+ */
+public class FileEntry {
+    private final String name;
+    private final String path;
+    private final boolean isDirectory;
+    private final long size;
+    private final long lastModified;
+
+    public FileEntry(String name, String path, boolean isDirectory, long size, long lastModified) {
+        this.name = name;
+        this.path = path;
+        this.isDirectory = isDirectory;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public boolean isDirectory() {
+        return isDirectory;
+    }
+
+    /**
+     * 文件的字节数，目录为0
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+}
@@ -0,0 +1,312 @@
+package cn.qqtheme.framework.entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * 按列存储的目录列表：所有名称连续存放在一个共享的字符数组中，大小、修改时间及类型
+ * 分别存放在基本类型数组中，父目录路径只保存一份。每项只占几十字节，
+ * 十万项的目录也只需几MB，需要时才按下标生成{@link FileEntry}或{@link FileItem}。
+ * 同一时间只能在一个线程中访问，可在后台填充后再交给主线程使用。
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @see cn.qqtheme.framework.adapter.FileAdapter
+ * @since 2018/10/24
+ */
+public class FileEntryStore {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int INITIAL_CHAR_CAPACITY = INITIAL_CAPACITY * 16;
+    private static final byte FLAG_DIRECTORY = 1;
+    private char[] chars = new char[INITIAL_CHAR_CAPACITY];
+    private int charCount = 0;
+    private int[] nameOffsets = new int[INITIAL_CAPACITY];
+    private int[] nameLengths = new int[INITIAL_CAPACITY];
+    private int[] parentIndexes = new int[INITIAL_CAPACITY];
+    private long[] sizes = new long[INITIAL_CAPACITY];
+    private long[] lastModifieds = new long[INITIAL_CAPACITY];
+    private byte[] flags = new byte[INITIAL_CAPACITY];
+    private int count = 0;
+    //父目录路径（以分隔符结尾），列出单个目录时只有一项，搜索结果则按目录共享
+    private ArrayList<String> parents = new ArrayList<>();
+    private HashMap<String, Integer> parentIndexMap = new HashMap<>();
+
+    public int size() {
+        return count;
+    }
+
+    public void add(FileEntry entry) {
+        String name = entry.getName();
+        String path = entry.getPath();
+        String parent = path.substring(0, path.length() - name.length());
+        add(parent, name, entry.isDirectory(), entry.getSize(), entry.getLastModified());
+    }
+
+    /**
+     * 直接按属性添加，不必先创建{@link FileEntry}
+     *
+     * @param parent 父目录路径，以分隔符结尾
+     */
+    public void add(String parent, String name, boolean isDirectory, long size, long lastModified) {
+        int length = name.length();
+        ensureCharCapacity(charCount + length);
+        name.getChars(0, length, chars, charCount);
+        append(obtainParentIndex(parent), length, isDirectory ? FLAG_DIRECTORY : 0, size, lastModified);
+    }
+
+    /**
+     * 追加另一个列表中的所有项，只复制基本类型数组，不创建字符串
+     */
+    public void addAll(FileEntryStore other) {
+        ensureCapacity(count + other.count);
+        ensureCharCapacity(charCount + other.charCount);
+        for (int i = 0; i < other.count; i++) {
+            add(other, i);
+        }
+    }
+
+    /**
+     * 追加另一个列表中的一项，只复制基本类型数组，不创建字符串
+     */
+    public void add(FileEntryStore other, int index) {
+        other.checkIndex(index);
+        int length = other.nameLengths[index];
+        ensureCharCapacity(charCount + length);
+        System.arraycopy(other.chars, other.nameOffsets[index], chars, charCount, length);
+        int parentIndex = obtainParentIndex(other.parents.get(other.parentIndexes[index]));
+        append(parentIndex, length, other.flags[index], other.sizes[index], other.lastModifieds[index]);
+    }
+
+    /**
+     * 按新的次序重排，如排序后的结果
+     *
+     * @param order 新列表中每一项在原列表中的下标
+     */
+    public void reorder(int[] order) {
+        if (order.length != count) {
+            throw new IllegalArgumentException("Order length " + order.length + " != size " + count);
+        }
+        int capacity = nameOffsets.length;
+        int[] newNameOffsets = new int[capacity];
+        int[] newNameLengths = new int[capacity];
+        int[] newParentIndexes = new int[capacity];
+        long[] newSizes = new long[capacity];
+        long[] newLastModifieds = new long[capacity];
+        byte[] newFlags = new byte[capacity];
+        for (int i = 0; i < count; i++) {
+            int from = order[i];
+            checkIndex(from);
+            newNameOffsets[i] = nameOffsets[from];
+            newNameLengths[i] = nameLengths[from];
+            newParentIndexes[i] = parentIndexes[from];
+            newSizes[i] = sizes[from];
+            newLastModifieds[i] = lastModifieds[from];
+            newFlags[i] = flags[from];
+        }
+        nameOffsets = newNameOffsets;
+        nameLengths = newNameLengths;
+        parentIndexes = newParentIndexes;
+        sizes = newSizes;
+        lastModifieds = newLastModifieds;
+        flags = newFlags;
+    }
+
+    /**
+     * 共享的名称字符数组，配合{@link #getNameOffset(int)}及{@link #getNameLength(int)}使用，
+     * 可直接交给{@link android.widget.TextView#setText(char[], int, int)}而不必创建字符串。
+     * 已写入的字符不会被改写，扩容及{@link #clear()}时都换用新数组，已绑定的视图不受影响
+     */
+    public char[] getNameChars() {
+        return chars;
+    }
+
+    public int getNameOffset(int index) {
+        checkIndex(index);
+        return nameOffsets[index];
+    }
+
+    public int getNameLength(int index) {
+        checkIndex(index);
+        return nameLengths[index];
+    }
+
+    /**
+     * 是否为隐藏项（名称以“.”开头），不创建字符串
+     */
+    public boolean isHidden(int index) {
+        checkIndex(index);
+        return nameLengths[index] > 0 && chars[nameOffsets[index]] == '.';
+    }
+
+    public String getName(int index) {
+        checkIndex(index);
+        return new String(chars, nameOffsets[index], nameLengths[index]);
+    }
+
+    public String getPath(int index) {
+        checkIndex(index);
+        return parents.get(parentIndexes[index]) + getName(index);
+    }
+
+    /**
+     * 某项的路径是否为指定路径，逐字符比较父目录及名称，不创建字符串
+     */
+    public boolean pathEquals(int index, String path) {
+        checkIndex(index);
+        String parent = parents.get(parentIndexes[index]);
+        int parentLength = parent.length();
+        int length = nameLengths[index];
+        if (path.length() != parentLength + length || !path.startsWith(parent)) {
+            return false;
+        }
+        int offset = nameOffsets[index];
+        for (int i = 0; i < length; i++) {
+            if (path.charAt(parentLength + i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 查找指定路径的项，先检查可能的下标，不匹配再按顺序查找，找不到返回-1
+     */
+    public int indexOf(String path, int hint) {
+        if (hint >= 0 && hint < count && pathEquals(hint, path)) {
+            return hint;
+        }
+        for (int i = 0; i < count; i++) {
+            if (pathEquals(i, path)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isDirectory(int index) {
+        checkIndex(index);
+        return (flags[index] & FLAG_DIRECTORY) != 0;
+    }
+
+    public long getSize(int index) {
+        checkIndex(index);
+        return sizes[index];
+    }
+
+    /**
+     * 更新大小，如后台计算出的目录大小
+     */
+    public void setSize(int index, long size) {
+        checkIndex(index);
+        sizes[index] = size;
+    }
+
+    public long getLastModified(int index) {
+        checkIndex(index);
+        return lastModifieds[index];
+    }
+
+    public FileEntry get(int index) {
+        return new FileEntry(getName(index), getPath(index), isDirectory(index), sizes[index], lastModifieds[index]);
+    }
+
+    /**
+     * 释放数组中未使用的容量，如长期缓存之前
+     */
+    public void trimToSize() {
+        if (chars.length > charCount) {
+            chars = Arrays.copyOf(chars, charCount);
+        }
+        if (nameOffsets.length > count) {
+            nameOffsets = Arrays.copyOf(nameOffsets, count);
+            nameLengths = Arrays.copyOf(nameLengths, count);
+            parentIndexes = Arrays.copyOf(parentIndexes, count);
+            sizes = Arrays.copyOf(sizes, count);
+            lastModifieds = Arrays.copyOf(lastModifieds, count);
+            flags = Arrays.copyOf(flags, count);
+        }
+    }
+
+    /**
+     * 估算占用的内存字节数，不含对象头
+     */
+    public int getMemorySize() {
+        int size = chars.length * 2 + nameOffsets.length * (4 + 4 + 4 + 8 + 8 + 1);
+        for (String parent : parents) {
+            size += parent.length() * 2;
+        }
+        return size;
+    }
+
+    /**
+     * 清空，较大的数组会被释放
+     */
+    public void clear() {
+        count = 0;
+        charCount = 0;
+        parents.clear();
+        parentIndexMap.clear();
+        //名称数组可能仍被TextView引用，不能复用
+        chars = new char[INITIAL_CHAR_CAPACITY];
+        if (nameOffsets.length > INITIAL_CAPACITY * 16) {
+            nameOffsets = new int[INITIAL_CAPACITY];
+            nameLengths = new int[INITIAL_CAPACITY];
+            parentIndexes = new int[INITIAL_CAPACITY];
+            sizes = new long[INITIAL_CAPACITY];
+            lastModifieds = new long[INITIAL_CAPACITY];
+            flags = new byte[INITIAL_CAPACITY];
+        }
+    }
+
+    private int obtainParentIndex(String parent) {
+        Integer parentIndex = parentIndexMap.get(parent);
+        if (parentIndex == null) {
+            parentIndex = parents.size();
+            parents.add(parent);
+            parentIndexMap.put(parent, parentIndex);
+        }
+        return parentIndex;
+    }
+
+    /**
+     * 名称已写入字符数组末尾后，记录其余属性
+     */
+    private void append(int parentIndex, int length, byte flag, long size, long lastModified) {
+        ensureCapacity(count + 1);
+        nameOffsets[count] = charCount;
+        nameLengths[count] = length;
+        parentIndexes[count] = parentIndex;
+        sizes[count] = size;
+        lastModifieds[count] = lastModified;
+        flags[count] = flag;
+        charCount += length;
+        count++;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity <= nameOffsets.length) {
+            return;
+        }
+        int capacity = Math.max(minCapacity, nameOffsets.length * 2);
+        nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+        nameLengths = Arrays.copyOf(nameLengths, capacity);
+        parentIndexes = Arrays.copyOf(parentIndexes, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        lastModifieds = Arrays.copyOf(lastModifieds, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+
+    private void ensureCharCapacity(int minCapacity) {
+        if (minCapacity <= chars.length) {
+            return;
+        }
+        chars = Arrays.copyOf(chars, Math.max(minCapacity, chars.length * 2));
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+    }
+
+}
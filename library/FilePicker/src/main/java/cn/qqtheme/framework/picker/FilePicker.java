@@ -16,12 +16,15 @@ import android.widget.TextView;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.regex.Pattern;
 
 import cn.qqtheme.framework.adapter.FileAdapter;
 import cn.qqtheme.framework.adapter.PathAdapter;
 import cn.qqtheme.framework.entity.FileItem;
 import cn.qqtheme.framework.popup.ConfirmPopup;
 import cn.qqtheme.framework.util.ConvertUtils;
+import cn.qqtheme.framework.util.DirectoryCache;
+import cn.qqtheme.framework.util.FileSearcher;
 import cn.qqtheme.framework.util.LogUtils;
 import cn.qqtheme.framework.util.StorageUtils;
 import cn.qqtheme.framework.widget.HorizontalListView;
@@ -32,7 +35,8 @@ import cn.qqtheme.framework.widget.HorizontalListView;
  * @author 李玉江[QQ:1032694760]
  * @since 2015/9/29, 2017/01/01, 2017/01/08
  */
-public class FilePicker extends ConfirmPopup<LinearLayout> implements AdapterView.OnItemClickListener {
+public class FilePicker extends ConfirmPopup<LinearLayout> implements AdapterView.OnItemClickListener,
+        FileAdapter.OnLoadListener {
     public static final int DIRECTORY = 0;
     public static final int FILE = 1;
 
@@ -43,6 +47,7 @@ public class FilePicker extends ConfirmPopup<LinearLayout> implements AdapterVie
     private OnFilePickListener onFilePickListener;
     private int mode;
     private CharSequence emptyHint = java.util.Locale.getDefault().getDisplayLanguage().contains("中文") ? "<空>" : "<Empty>";
+    private CharSequence loadingHint = java.util.Locale.getDefault().getDisplayLanguage().contains("中文") ? "加载中…" : "Loading…";
 
     @IntDef(value = {DIRECTORY, FILE})
     @Retention(RetentionPolicy.SOURCE)
@@ -66,6 +71,9 @@ public class FilePicker extends ConfirmPopup<LinearLayout> implements AdapterVie
         adapter.setShowHideDir(false);
         adapter.setShowHomeDir(false);
         adapter.setShowUpDir(false);
+        adapter.setOnLoadListener(this);
+        //返回最近访问过的目录时无需重新遍历
+        adapter.setDirectoryCache(DirectoryCache.getDefault());
     }
 
     @Override
@@ -147,6 +155,13 @@ public class FilePicker extends ConfirmPopup<LinearLayout> implements AdapterVie
         adapter.setShowHideDir(showHideDir);
     }
 
+    /**
+     * 是否在目录后显示其大小，便于找出占用空间大的目录
+     */
+    public void setShowFolderSize(boolean showFolderSize) {
+        adapter.setShowFolderSize(showFolderSize);
+    }
+
     public void setFileIcon(Drawable fileIcon) {
         adapter.setFileIcon(fileIcon);
     }
@@ -175,6 +190,10 @@ public class FilePicker extends ConfirmPopup<LinearLayout> implements AdapterVie
         this.emptyHint = emptyHint;
     }
 
+    public void setLoadingHint(CharSequence loadingHint) {
+        this.loadingHint = loadingHint;
+    }
+
     @Override
     protected void setContentViewBefore() {
         boolean isPickFile = mode == FILE;
@@ -207,6 +226,7 @@ public class FilePicker extends ConfirmPopup<LinearLayout> implements AdapterVie
     @Override
     public void dismiss() {
         super.dismiss();
+        adapter.cancelLoading();
         //adapter.recycleData();
         //pathAdapter.recycleData();
     }
@@ -245,6 +265,22 @@ public class FilePicker extends ConfirmPopup<LinearLayout> implements AdapterVie
         }
     }
 
+    /**
+     * 从指定目录递归搜索名称匹配的文件及目录，结果逐批显示在列表中
+     *
+     * @param rootPath    为null则从外部存储根目录开始
+     * @param namePattern 名称须匹配的正则，部分匹配即可
+     */
+    public void search(@Nullable String rootPath, @Nullable Pattern namePattern) {
+        FileSearcher searcher = rootPath == null ? new FileSearcher() : new FileSearcher(rootPath);
+        searcher.setNamePattern(namePattern);
+        searcher.setAllowExtensions(adapter.getAllowExtensions());
+        searcher.setOnlyDir(mode == DIRECTORY);
+        searcher.setIncludeHidden(adapter.isShowHideDir());
+        pathAdapter.updatePath(searcher.getRootPath());
+        adapter.search(searcher);
+    }
+
     private void refreshCurrentDirPath(String currentPath) {
         if (currentPath.equals("/")) {
             pathAdapter.updatePath("/");
@@ -252,19 +288,28 @@ public class FilePicker extends ConfirmPopup<LinearLayout> implements AdapterVie
             pathAdapter.updatePath(currentPath);
         }
         adapter.loadData(currentPath);
-        int adapterCount = adapter.getCount();
-        if (adapter.isShowHomeDir()) {
-            adapterCount--;
+    }
+
+    @Override
+    public void onLoadStarted(String path) {
+        if (emptyView == null) {
+            return;
         }
-        if (adapter.isShowUpDir()) {
-            adapterCount--;
+        emptyView.setVisibility(View.VISIBLE);
+        emptyView.setText(loadingHint);
+    }
+
+    @Override
+    public void onLoadFinished(String path, int count) {
+        if (emptyView == null) {
+            return;
         }
-        if (adapterCount < 1) {
+        if (count < 1) {
             LogUtils.verbose(this, "no files, or dir is empty");
             emptyView.setVisibility(View.VISIBLE);
             emptyView.setText(emptyHint);
         } else {
-            LogUtils.verbose(this, "files or dirs count: " + adapterCount);
+            LogUtils.verbose(this, "files or dirs count: " + count);
             emptyView.setVisibility(View.GONE);
         }
     }
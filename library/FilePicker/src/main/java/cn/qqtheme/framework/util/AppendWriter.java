@@ -0,0 +1,322 @@
+package cn.qqtheme.framework.util;
+
+import android.os.SystemClock;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 追加写入文件，适用于日志、审计记录等频繁追加的场景。
+ * 每个路径共享一个长期打开的实例，写入先进入缓冲区，超过大小或时间阈值、
+ * 显式调用{@link #flush()}/{@link #sync()}或关闭时才写入文件，时间阈值由后台线程定时检查。
+ * 线程安全，按{@link #open(String)}与{@link #close()}配对计数，最后一次关闭时写入剩余内容并关闭文件。
+ * <pre>
+ *     AppendWriter writer = AppendWriter.open(path);
+ *     writer.append("...");
+ *     //Activity#onStop()等时机
+ *     writer.flush();
+ *     //不再使用时
+ *     writer.close();
+ * </pre>
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @see FileUtils#appendText(String, String)
+ * @since 2018/10/25
+ */
+public class AppendWriter implements Closeable {
+    public static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;//毫秒
+    private static final HashMap<String, AppendWriter> WRITERS = new HashMap<>();
+    private static ScheduledExecutorService backgroundExecutor;
+    private final String path;
+    private final String charset;
+    private byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+    private int count = 0;
+    private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+    private long lastFlushTime = SystemClock.uptimeMillis();
+    private FileOutputStream stream;
+    private ScheduledFuture<?> backgroundFlush;
+    private ScheduledFuture<?> pendingFlush;
+    private int openCount = 0;
+
+    private AppendWriter(String path, String charset) {
+        this.path = path;
+        this.charset = charset;
+    }
+
+    /**
+     * 获取指定路径的写入实例，以UTF-8编码
+     */
+    public static AppendWriter open(String path) {
+        return open(path, "utf-8");
+    }
+
+    /**
+     * 获取指定路径的写入实例，同一路径共享一个实例，编码以首次打开时为准
+     */
+    public static AppendWriter open(String path, String charset) {
+        String key = new File(path).getAbsolutePath();
+        synchronized (WRITERS) {
+            AppendWriter writer = WRITERS.get(key);
+            if (writer == null) {
+                writer = new AppendWriter(key, charset);
+                WRITERS.put(key, writer);
+            }
+            synchronized (writer) {
+                writer.openCount++;
+            }
+            return writer;
+        }
+    }
+
+    /**
+     * 把所有实例的缓冲写入文件，如在Activity#onStop()中调用
+     */
+    public static void flushAll() {
+        for (AppendWriter writer : snapshot()) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * 写入所有实例并释放打开的文件，如在应用退出时调用。
+     * 实例仍由各自的持有者使用，下次追加时重新打开文件
+     */
+    public static void closeAll() {
+        for (AppendWriter writer : snapshot()) {
+            writer.release();
+        }
+    }
+
+    private static ArrayList<AppendWriter> snapshot() {
+        synchronized (WRITERS) {
+            return new ArrayList<>(WRITERS.values());
+        }
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * 设置缓冲区大小，缓冲的内容超过此大小时写入文件
+     */
+    public synchronized void setBufferSize(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+        flush();
+        buffer = new byte[bufferSize];
+    }
+
+    /**
+     * 设置时间阈值，距上次写入超过此时间时写入文件
+     */
+    public synchronized void setFlushInterval(long flushInterval) {
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException("Flush interval must be positive");
+        }
+        this.flushInterval = flushInterval;
+        if (backgroundFlush != null) {
+            setBackground(false);
+            setBackground(true);
+        }
+    }
+
+    /**
+     * 是否由后台线程按时间阈值固定间隔地写入，此时调用线程只在缓冲区已满时才写入文件；
+     * 否则缓冲区有内容后安排一次延迟写入，并在追加时检查时间阈值
+     */
+    public synchronized void setBackground(boolean background) {
+        if (background == (backgroundFlush != null)) {
+            return;
+        }
+        if (background) {
+            backgroundFlush = getBackgroundExecutor().scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        } else {
+            backgroundFlush.cancel(false);
+            backgroundFlush = null;
+        }
+    }
+
+    /**
+     * 追加文本
+     *
+     * @return 追加时如需写入文件且写入失败则返回false
+     */
+    public boolean append(String content) {
+        try {
+            return append(content.getBytes(charset));
+        } catch (UnsupportedEncodingException e) {
+            LogUtils.warn(e);
+            return false;
+        }
+    }
+
+    /**
+     * 追加字节
+     *
+     * @return 追加时如需写入文件且写入失败则返回false
+     */
+    public synchronized boolean append(byte[] data) {
+        if (openCount < 1) {
+            throw new IllegalStateException("Writer already closed: " + path);
+        }
+        try {
+            if (count + data.length > buffer.length) {
+                writeBuffer();
+            }
+            if (data.length > buffer.length) {
+                //超过缓冲区大小的内容直接写入
+                getStream().write(data);
+            } else {
+                System.arraycopy(data, 0, buffer, count, data.length);
+                count += data.length;
+            }
+            if (backgroundFlush == null) {
+                if (SystemClock.uptimeMillis() - lastFlushTime >= flushInterval) {
+                    writeBuffer();
+                } else {
+                    scheduleFlush();
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            LogUtils.warn(this, e);
+            return false;
+        }
+    }
+
+    /**
+     * 把缓冲的内容写入文件
+     */
+    public synchronized boolean flush() {
+        try {
+            writeBuffer();
+            return true;
+        } catch (IOException e) {
+            LogUtils.warn(this, e);
+            return false;
+        }
+    }
+
+    /**
+     * 写入文件并同步到存储设备，确保断电等情况下不丢失
+     */
+    public synchronized boolean sync() {
+        try {
+            writeBuffer();
+            if (stream != null) {
+                stream.getFD().sync();
+            }
+            return true;
+        } catch (IOException e) {
+            LogUtils.warn(this, e);
+            return false;
+        }
+    }
+
+    /**
+     * 关闭，与{@link #open(String)}配对，最后一次关闭时写入剩余内容并关闭文件
+     */
+    @Override
+    public void close() {
+        synchronized (WRITERS) {
+            synchronized (this) {
+                if (openCount < 1) {
+                    return;
+                }
+                openCount--;
+                if (openCount > 0) {
+                    return;
+                }
+                WRITERS.remove(path);
+                setBackground(false);
+                release();
+            }
+        }
+    }
+
+    /**
+     * 写入剩余内容并关闭文件，实例仍可继续追加
+     */
+    private synchronized void release() {
+        flush();
+        FileUtils.closeSilently(stream);
+        stream = null;
+    }
+
+    /**
+     * 缓冲区有内容时，在时间阈值后写入，避免之后不再追加时内容一直滞留在缓冲区
+     */
+    private void scheduleFlush() {
+        if (count == 0 || pendingFlush != null) {
+            return;
+        }
+        long delay = flushInterval - (SystemClock.uptimeMillis() - lastFlushTime);
+        pendingFlush = getBackgroundExecutor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (AppendWriter.this) {
+                    pendingFlush = null;
+                    flush();
+                }
+            }
+        }, Math.max(delay, 0), TimeUnit.MILLISECONDS);
+    }
+
+    private void writeBuffer() throws IOException {
+        lastFlushTime = SystemClock.uptimeMillis();
+        if (pendingFlush != null) {
+            pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+        if (count == 0) {
+            return;
+        }
+        getStream().write(buffer, 0, count);
+        count = 0;
+    }
+
+    private FileOutputStream getStream() throws IOException {
+        if (stream == null) {
+            stream = new FileOutputStream(path, true);
+        }
+        return stream;
+    }
+
+    private static synchronized ScheduledExecutorService getBackgroundExecutor() {
+        if (backgroundExecutor == null) {
+            backgroundExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "AppendWriter");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return backgroundExecutor;
+    }
+
+    @Override
+    public String toString() {
+        return "AppendWriter[" + path + "]";
+    }
+
+}
@@ -0,0 +1,204 @@
+package cn.qqtheme.framework.util;
+
+import android.util.LruCache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import cn.qqtheme.framework.entity.FileEntry;
+import cn.qqtheme.framework.entity.FileEntryStore;
+
+/**
+ * 目录列表缓存，按路径缓存最近访问的目录快照（已按名称排序，包括隐藏项），
+ * 以目录的最后修改时间校验是否过期，返回最近访问过的目录时无需重新遍历。
+ * 快照按列紧凑存储（见{@link FileEntryStore}），按估算的字节数限制总大小，
+ * 数万项的大目录同样可以缓存，而这正是重新遍历最慢的情况。
+ * 注意：目录的修改时间只在增删及重命名子项时变化，子文件内容变化不会使缓存失效，
+ * 此时可调用{@link #invalidate(String)}。
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @since 2018/10/21
+ */
+public class DirectoryCache {
+    //部分文件系统的修改时间精度为1~2秒，修改时间距快照时间太近则不可信
+    private static final long MTIME_GRANULARITY = 2000;
+    private static DirectoryCache defaultCache;
+    private LruCache<String, Snapshot> cache;
+    private int hitCount = 0;
+    private int missCount = 0;
+    private int staleCount = 0;
+
+    /**
+     * @param maxSize 所有快照估算的总字节数上限
+     */
+    public DirectoryCache(int maxSize) {
+        cache = new LruCache<String, Snapshot>(maxSize) {
+            @Override
+            protected int sizeOf(String key, Snapshot value) {
+                return value.entries.getMemorySize() + 1;
+            }
+        };
+    }
+
+    /**
+     * 进程内共享的缓存，上限为最大可用内存的1/16
+     */
+    public static synchronized DirectoryCache getDefault() {
+        if (defaultCache == null) {
+            long maxSize = Runtime.getRuntime().maxMemory() / 16;
+            defaultCache = new DirectoryCache((int) Math.min(maxSize, Integer.MAX_VALUE));
+        }
+        return defaultCache;
+    }
+
+    /**
+     * 列出目录下的所有子目录及文件，目录在前、文件在后，分别按名称排序。
+     * 返回的列表不可修改。
+     */
+    public List<FileEntry> list(String dirPath) {
+        FileEntryStore snapshot = obtain(dirPath);
+        ArrayList<FileEntry> entries = new ArrayList<>(snapshot.size());
+        for (int i = 0, n = snapshot.size(); i < n; i++) {
+            entries.add(snapshot.get(i));
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * 按条件过滤目录快照，按名称排好序的子目录及文件分别追加到两个列表中，不创建{@link FileEntry}
+     *
+     * @param includeHidden   是否包括隐藏的文件及目录（以“.”开头）
+     * @param onlyDir         是否只列出目录
+     * @param allowExtensions 允许的文件扩展名，为null则不限
+     */
+    public void list(String dirPath, boolean includeHidden, boolean onlyDir, String[] allowExtensions,
+                     FileEntryStore dirs, FileEntryStore files) {
+        FileEntryStore snapshot = obtain(dirPath);
+        for (int i = 0, n = snapshot.size(); i < n; i++) {
+            if (!includeHidden && snapshot.isHidden(i)) {
+                continue;
+            }
+            if (snapshot.isDirectory(i)) {
+                dirs.add(snapshot, i);
+            } else if (!onlyDir && FileUtils.isAllowExtension(snapshot.getName(i), allowExtensions)) {
+                files.add(snapshot, i);
+            }
+        }
+    }
+
+    /**
+     * 获取有效的快照，没有或已过期则重新遍历。快照创建后不再修改，可在多个线程中同时读取
+     */
+    private FileEntryStore obtain(String dirPath) {
+        String key = normalize(dirPath);
+        long lastModified = new File(key).lastModified();
+        Snapshot snapshot = cache.get(key);
+        if (snapshot != null) {
+            if (snapshot.isValid(lastModified)) {
+                increaseHitCount();
+                LogUtils.verbose(this, "directory cache hit: " + key);
+                return snapshot.entries;
+            }
+            increaseStaleCount();
+            LogUtils.verbose(this, "directory cache stale: " + key);
+        } else {
+            increaseMissCount();
+        }
+        long snapshotTime = System.currentTimeMillis();
+        FileEntryStore entries = new FileEntryStore();
+        FileEntryStore files = new FileEntryStore();
+        FileUtils.listEntries(key, true, false, null, entries, files);
+        FileUtils.sortEntries(entries, FileUtils.BY_NAME_ASC);
+        FileUtils.sortEntries(files, FileUtils.BY_NAME_ASC);
+        entries.addAll(files);
+        entries.trimToSize();
+        snapshot = new Snapshot(entries, lastModified, snapshotTime);
+        if (lastModified > 0) {
+            //目录不存在或不可读时不缓存
+            cache.put(key, snapshot);
+        }
+        return snapshot.entries;
+    }
+
+    /**
+     * 使指定目录的快照失效
+     */
+    public void invalidate(String dirPath) {
+        cache.remove(normalize(dirPath));
+    }
+
+    /**
+     * 清空所有快照
+     */
+    public void clear() {
+        cache.evictAll();
+    }
+
+    /**
+     * 命中有效快照的次数
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * 没有快照的次数
+     */
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * 快照已过期而重新遍历的次数
+     */
+    public synchronized int getStaleCount() {
+        return staleCount;
+    }
+
+    private synchronized void increaseHitCount() {
+        hitCount++;
+    }
+
+    private synchronized void increaseMissCount() {
+        missCount++;
+    }
+
+    private synchronized void increaseStaleCount() {
+        staleCount++;
+    }
+
+    private static String normalize(String dirPath) {
+        if (dirPath.length() > 1 && dirPath.endsWith(File.separator)) {
+            return dirPath.substring(0, dirPath.length() - 1);
+        }
+        return dirPath;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ENGLISH, "DirectoryCache[hits=%d, misses=%d, stales=%d, size=%d/%d]",
+                hitCount, missCount, staleCount, cache.size(), cache.maxSize());
+    }
+
+    private static class Snapshot {
+        private final FileEntryStore entries;
+        private final long lastModified;
+        private final long snapshotTime;
+
+        Snapshot(FileEntryStore entries, long lastModified, long snapshotTime) {
+            this.entries = entries;
+            this.lastModified = lastModified;
+            this.snapshotTime = snapshotTime;
+        }
+
+        boolean isValid(long currentLastModified) {
+            return currentLastModified == lastModified
+                    && snapshotTime - lastModified > MTIME_GRANULARITY;
+        }
+
+    }
+
+}
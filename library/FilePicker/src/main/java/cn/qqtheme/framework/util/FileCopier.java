@@ -0,0 +1,290 @@
+package cn.qqtheme.framework.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文件及目录复制，使用{@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+ * 由内核直接复制数据而不经过Java层的缓冲区，目录中的文件由固定数量的工作线程并行复制，
+ * 支持进度回调及取消。
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @see FileUtils#copy(File, File)
+ * @since 2018/10/22
+ */
+public class FileCopier {
+    public static final int DEFAULT_THREAD_COUNT = 3;
+    private static final long CHUNK_SIZE = 8 * 1024 * 1024;//每次transferTo的字节数，便于及时响应取消
+    private static final long PROGRESS_INTERVAL = 100;//进度回调的最小间隔，毫秒
+    private final File src;
+    private final File tar;
+    private int threadCount = DEFAULT_THREAD_COUNT;
+    private OnCopyListener onCopyListener;
+    private Handler handler;
+    private volatile boolean cancelled = false;
+    private volatile long lastProgressTime = 0;
+    private final AtomicLong copiedBytes = new AtomicLong();
+    private final AtomicInteger copiedFiles = new AtomicInteger();
+    private long totalBytes = 0;
+    private int totalFiles = 0;
+
+    /**
+     * 复制文件为另一个文件，或复制某目录下的所有文件及目录到另一个目录下
+     */
+    public FileCopier(File src, File tar) {
+        this.src = src;
+        this.tar = tar;
+    }
+
+    /**
+     * 设置并行复制的线程数，机械存储或SD卡上过多的线程反而更慢
+     */
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * 设置进度监听，回调均在主线程执行
+     */
+    public void setOnCopyListener(OnCopyListener onCopyListener) {
+        this.onCopyListener = onCopyListener;
+        if (onCopyListener != null && handler == null) {
+            handler = new Handler(Looper.getMainLooper());
+        }
+    }
+
+    /**
+     * 取消复制，已复制完的文件保留，正在复制的文件将被删除
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 在后台线程中复制，立即返回
+     */
+    public void start() {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                copy();
+            }
+        }, "FileCopier").start();
+    }
+
+    /**
+     * 在当前线程中复制，直到全部完成或被取消才返回，不要在主线程中复制大量文件
+     *
+     * @return 全部复制成功返回true，任一文件失败或被取消返回false
+     */
+    public boolean copy() {
+        LogUtils.verbose(this, String.format("copy %s to %s", src.getAbsolutePath(), tar.getAbsolutePath()));
+        List<File[]> jobs = new ArrayList<>();
+        if (src.isFile()) {
+            jobs.add(new File[]{src, tar});
+        } else if (src.isDirectory()) {
+            String srcPath = src.getAbsolutePath() + File.separator;
+            if ((tar.getAbsolutePath() + File.separator).startsWith(srcPath)) {
+                //复制到自身的子目录会无限递归
+                LogUtils.warn(this, "can't copy a directory into itself: " + tar);
+                notifyFinished(false);
+                return false;
+            }
+            collectJobs(src, tar, jobs);
+        } else {
+            notifyFinished(false);
+            return false;
+        }
+        for (File[] job : jobs) {
+            totalBytes += job[0].length();
+        }
+        totalFiles = jobs.size();
+        notifyProgress(true);
+        boolean success = !cancelled && (jobs.size() <= 1 || threadCount == 1 ? copySerial(jobs) : copyParallel(jobs));
+        success = success && !cancelled;
+        notifyProgress(true);
+        notifyFinished(success);
+        return success;
+    }
+
+    /**
+     * 单线程遍历目录，创建目标目录并收集待复制的文件
+     */
+    private void collectJobs(File srcDir, File tarDir, List<File[]> jobs) {
+        //noinspection ResultOfMethodCallIgnored
+        tarDir.mkdirs();
+        File[] files = srcDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (cancelled) {
+                return;
+            }
+            File target = new File(tarDir, file.getName());
+            if (file.isDirectory()) {
+                if (FileUtils.isSymlink(file)) {
+                    //指向上级目录的链接会无限递归，不复制目录链接
+                    LogUtils.verbose(this, "skip symlink directory: " + file);
+                    continue;
+                }
+                collectJobs(file, target, jobs);
+            } else {
+                jobs.add(new File[]{file, target});
+            }
+        }
+    }
+
+    private boolean copySerial(List<File[]> jobs) {
+        boolean success = true;
+        for (File[] job : jobs) {
+            if (cancelled) {
+                return false;
+            }
+            success = copyFile(job[0], job[1]) && success;
+        }
+        return success;
+    }
+
+    private boolean copyParallel(List<File[]> jobs) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, jobs.size()));
+        List<Future<Boolean>> futures = new ArrayList<>(jobs.size());
+        for (final File[] job : jobs) {
+            futures.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    return !cancelled && copyFile(job[0], job[1]);
+                }
+            }));
+        }
+        executor.shutdown();
+        boolean success = true;
+        for (Future<Boolean> future : futures) {
+            try {
+                success = future.get() && success;
+            } catch (InterruptedException e) {
+                cancel();
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException | CancellationException e) {
+                LogUtils.warn(this, e);
+                success = false;
+            }
+        }
+        return success;
+    }
+
+    private boolean copyFile(File srcFile, File tarFile) {
+        FileInputStream fis = null;
+        FileOutputStream fos = null;
+        boolean completed = false;
+        try {
+            fis = new FileInputStream(srcFile);
+            fos = new FileOutputStream(tarFile);
+            FileChannel in = fis.getChannel();
+            FileChannel out = fos.getChannel();
+            long size = in.size();
+            long position = 0;
+            while (position < size && !cancelled) {
+                long count = in.transferTo(position, Math.min(CHUNK_SIZE, size - position), out);
+                if (count <= 0) {
+                    //复制过程中源文件被截短
+                    LogUtils.warn(this, String.format("copy %s stopped at %s/%s", srcFile, position, size));
+                    break;
+                }
+                position += count;
+                copiedBytes.addAndGet(count);
+                notifyProgress(false);
+            }
+            completed = !cancelled && position >= size;
+        } catch (IOException e) {
+            LogUtils.warn(this, e);
+        } finally {
+            FileUtils.closeSilently(fis);
+            FileUtils.closeSilently(fos);
+        }
+        if (!completed) {
+            //被取消或复制不完整，不保留不完整的文件
+            //noinspection ResultOfMethodCallIgnored
+            tarFile.delete();
+            return false;
+        }
+        copiedFiles.incrementAndGet();
+        notifyProgress(false);
+        return true;
+    }
+
+    private void notifyProgress(boolean force) {
+        if (onCopyListener == null) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        if (!force && now - lastProgressTime < PROGRESS_INTERVAL) {
+            return;
+        }
+        lastProgressTime = now;
+        final long bytes = copiedBytes.get();
+        final int files = copiedFiles.get();
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                onCopyListener.onCopyProgress(bytes, totalBytes, files, totalFiles);
+            }
+        });
+    }
+
+    private void notifyFinished(final boolean success) {
+        if (onCopyListener == null) {
+            return;
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                onCopyListener.onCopyFinished(success, cancelled);
+            }
+        });
+    }
+
+    public interface OnCopyListener {
+
+        /**
+         * 复制进度
+         */
+        void onCopyProgress(long copiedBytes, long totalBytes, int copiedFiles, int totalFiles);
+
+        /**
+         * 复制结束
+         *
+         * @param success   是否全部复制成功
+         * @param cancelled 是否被取消
+         */
+        void onCopyFinished(boolean success, boolean cancelled);
+
+    }
+
+}
@@ -0,0 +1,354 @@
+package cn.qqtheme.framework.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 文件及目录删除。先把顶层文件或目录重命名为一个隐藏的临时名称（只重命名一次，
+ * 同时规避EBUSY问题），原路径随即可用，再由固定数量的工作线程并行遍历并删除，
+ * 每个文件只删除一次。保留顶层目录时不重命名顶层目录本身，而是把其下的子项移入
+ * 其中一个隐藏的临时目录。进程被杀等原因遗留的临时名称会在下次删除时一并清理。
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @see FileUtils#delete(File, boolean)
+ * @since 2018/10/22
+ */
+public class FileDeleter {
+    public static final int DEFAULT_THREAD_COUNT = 3;
+    private static final String TOMBSTONE_PREFIX = ".deleted-";
+    private static final long PROGRESS_INTERVAL = 100;//进度回调的最小间隔，毫秒
+    private static final Set<String> ACTIVE_TOMBSTONES = new HashSet<>();//本进程中正在删除的临时名称
+    private final File file;
+    private final boolean deleteRootDir;
+    private int threadCount = DEFAULT_THREAD_COUNT;
+    private OnDeleteListener onDeleteListener;
+    private Handler handler;
+    private volatile long lastProgressTime = 0;
+    private final AtomicInteger deletedCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+    private final AtomicInteger pendingDirs = new AtomicInteger();
+    private final Queue<File> walkedDirs = new ConcurrentLinkedQueue<>();
+    private final Object lock = new Object();
+    private ExecutorService executor;
+
+    /**
+     * @param deleteRootDir 是否删除顶层目录，否则只删除目录下的所有文件及目录
+     */
+    public FileDeleter(File file, boolean deleteRootDir) {
+        this.file = file.getAbsoluteFile();
+        this.deleteRootDir = deleteRootDir;
+    }
+
+    /**
+     * 设置并行删除的线程数
+     */
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * 设置进度监听，回调均在主线程执行
+     */
+    public void setOnDeleteListener(OnDeleteListener onDeleteListener) {
+        this.onDeleteListener = onDeleteListener;
+        if (onDeleteListener != null && handler == null) {
+            handler = new Handler(Looper.getMainLooper());
+        }
+    }
+
+    /**
+     * 重命名后在后台线程中删除，立即返回
+     *
+     * @return 文件或目录不存在时返回false
+     */
+    public boolean start() {
+        final List<File> targets = moveToTombstone();
+        if (targets == null) {
+            notifyFinished(false);
+            return false;
+        }
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                deleteTargets(targets, true);
+            }
+        }, "FileDeleter").start();
+        return true;
+    }
+
+    /**
+     * 在当前线程中等待删除完成
+     *
+     * @return 全部删除成功返回true
+     */
+    public boolean delete() {
+        List<File> targets = moveToTombstone();
+        if (targets == null) {
+            notifyFinished(false);
+            return false;
+        }
+        return deleteTargets(targets, true);
+    }
+
+    /**
+     * bug: open failed: EBUSY (Device or resource busy)
+     * fix: http://stackoverflow.com/questions/11539657/open-failed-ebusy-device-or-resource-busy
+     *
+     * @return 需要整个删除的文件及目录，不存在时返回null
+     */
+    private List<File> moveToTombstone() {
+        LogUtils.verbose(this, String.format("delete file %s", file.getAbsolutePath()));
+        if (!file.exists()) {
+            return null;
+        }
+        List<File> targets = new ArrayList<>();
+        String suffix = "-" + System.currentTimeMillis();
+        if (deleteRootDir || !file.isDirectory() || FileUtils.isSymlink(file)) {
+            File tombstone = new File(file.getParentFile(), TOMBSTONE_PREFIX + file.getName() + suffix);
+            if (file.renameTo(tombstone)) {
+                targets.add(tombstone);
+            } else {
+                //无法重命名（如顶层为根目录或存储挂载点）则原地删除
+                LogUtils.verbose(this, "rename failed, delete in place: " + file);
+                targets.add(file);
+            }
+            return targets;
+        }
+        //保留顶层目录：不动目录本身，以免丢失其权限及正在监听它的FileObserver，只移走其下的子项
+        File[] children = file.listFiles();
+        if (children == null || children.length == 0) {
+            return targets;
+        }
+        File tombstone = new File(file, TOMBSTONE_PREFIX + suffix);
+        boolean moved = tombstone.mkdir();
+        if (moved) {
+            targets.add(tombstone);
+        }
+        for (File child : children) {
+            if (!moved || !child.renameTo(new File(tombstone, child.getName()))) {
+                //无法移走的子项原地删除
+                targets.add(child);
+            }
+        }
+        return targets;
+    }
+
+    private boolean deleteTargets(List<File> targets, boolean sweep) {
+        synchronized (ACTIVE_TOMBSTONES) {
+            for (File target : targets) {
+                ACTIVE_TOMBSTONES.add(target.getPath());
+            }
+        }
+        boolean success;
+        try {
+            success = deleteTree(targets);
+        } finally {
+            synchronized (ACTIVE_TOMBSTONES) {
+                for (File target : targets) {
+                    ACTIVE_TOMBSTONES.remove(target.getPath());
+                }
+            }
+        }
+        if (sweep) {
+            sweepTombstones(file.getParentFile());
+        }
+        return success;
+    }
+
+    /**
+     * 清理上次被中断（如进程被杀）而遗留在目录中的临时名称，不计入本次删除的进度
+     */
+    private static void sweepTombstones(File dir) {
+        if (dir == null) {
+            return;
+        }
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (!child.getName().startsWith(TOMBSTONE_PREFIX)) {
+                continue;
+            }
+            synchronized (ACTIVE_TOMBSTONES) {
+                if (ACTIVE_TOMBSTONES.contains(child.getPath())) {
+                    //本进程中另一个删除任务正在删除
+                    continue;
+                }
+            }
+            LogUtils.verbose(FileDeleter.class, "sweep leftover tombstone: " + child);
+            List<File> leftover = new ArrayList<>(1);
+            leftover.add(child);
+            new FileDeleter(child, true).deleteTargets(leftover, false);
+        }
+    }
+
+    /**
+     * 删除各个文件及目录（含其本身），目录由工作线程并行遍历
+     */
+    private boolean deleteTree(List<File> roots) {
+        List<File> dirRoots = new ArrayList<>(roots.size());
+        for (File root : roots) {
+            if (root.isDirectory() && !FileUtils.isSymlink(root)) {
+                dirRoots.add(root);
+            } else if (root.delete()) {
+                //文件或符号链接，只删除其本身
+                deletedCount.incrementAndGet();
+            } else {
+                failedCount.incrementAndGet();
+            }
+        }
+        if (dirRoots.isEmpty()) {
+            boolean success = failedCount.get() == 0;
+            notifyProgress(true);
+            notifyFinished(success);
+            return success;
+        }
+        executor = Executors.newFixedThreadPool(threadCount);
+        pendingDirs.set(dirRoots.size());
+        for (File root : dirRoots) {
+            executor.execute(new WalkTask(root));
+        }
+        try {
+            synchronized (lock) {
+                while (pendingDirs.get() > 0) {
+                    lock.wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            notifyFinished(false);
+            return false;
+        }
+        executor.shutdown();
+        //子目录的路径总比父目录长，按路径长度倒序删除即可保证先删子目录
+        List<File> dirs = new ArrayList<>(walkedDirs);
+        Collections.sort(dirs, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                return rhs.getPath().length() - lhs.getPath().length();
+            }
+        });
+        for (File dir : dirs) {
+            if (dir.delete()) {
+                deletedCount.incrementAndGet();
+            } else {
+                failedCount.incrementAndGet();
+            }
+        }
+        boolean success = failedCount.get() == 0;
+        LogUtils.verbose(this, "deleted " + deletedCount.get() + " items, failed " + failedCount.get());
+        notifyProgress(true);
+        notifyFinished(success);
+        return success;
+    }
+
+    private void notifyProgress(boolean force) {
+        if (onDeleteListener == null) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        if (!force && now - lastProgressTime < PROGRESS_INTERVAL) {
+            return;
+        }
+        lastProgressTime = now;
+        final int count = deletedCount.get();
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                onDeleteListener.onDeleteProgress(count);
+            }
+        });
+    }
+
+    private void notifyFinished(final boolean success) {
+        if (onDeleteListener == null) {
+            return;
+        }
+        final int count = deletedCount.get();
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                onDeleteListener.onDeleteFinished(success, count);
+            }
+        });
+    }
+
+    /**
+     * 删除一个目录下的文件，子目录交给其他工作线程，目录本身在全部遍历完后删除
+     */
+    private class WalkTask implements Runnable {
+        private final File dir;
+
+        WalkTask(File dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        public void run() {
+            try {
+                walkedDirs.add(dir);
+                File[] children = dir.listFiles();
+                if (children == null) {
+                    return;
+                }
+                for (File child : children) {
+                    if (child.isDirectory() && !FileUtils.isSymlink(child)) {
+                        pendingDirs.incrementAndGet();
+                        executor.execute(new WalkTask(child));
+                    } else if (child.delete()) {
+                        deletedCount.incrementAndGet();
+                        notifyProgress(false);
+                    } else {
+                        failedCount.incrementAndGet();
+                    }
+                }
+            } finally {
+                if (pendingDirs.decrementAndGet() == 0) {
+                    synchronized (lock) {
+                        lock.notifyAll();
+                    }
+                }
+            }
+        }
+
+    }
+
+    public interface OnDeleteListener {
+
+        /**
+         * 删除进度，事先不统计总数，以免再遍历一次
+         *
+         * @param deletedCount 已删除的文件及目录个数
+         */
+        void onDeleteProgress(int deletedCount);
+
+        /**
+         * 删除结束
+         *
+         * @param success      是否全部删除成功
+         * @param deletedCount 已删除的文件及目录个数
+         */
+        void onDeleteFinished(boolean success, int deletedCount);
+
+    }
+
+}
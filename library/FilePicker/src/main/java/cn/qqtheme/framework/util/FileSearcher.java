@@ -0,0 +1,264 @@
+package cn.qqtheme.framework.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import cn.qqtheme.framework.entity.FileEntry;
+
+/**
+ * 递归搜索文件及目录，由固定数量的工作线程并行遍历各子目录，
+ * 匹配的结果分批在主线程中回调，不必等待整个遍历完成。
+ * 不跟随符号链接，以免重复搜索或陷入循环。
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @since 2018/10/23
+ */
+public class FileSearcher {
+    public static final int DEFAULT_THREAD_COUNT = 3;
+    public static final int DEFAULT_MAX_DEPTH = 12;
+    private static final long PUBLISH_INTERVAL = 100;//结果回调的最小间隔，毫秒
+    private final String rootPath;
+    private Pattern namePattern = null;
+    private String[] allowExtensions = null;
+    private boolean onlyDir = false;
+    private boolean includeHidden = false;
+    private int maxDepth = DEFAULT_MAX_DEPTH;
+    private int threadCount = DEFAULT_THREAD_COUNT;
+    private OnSearchListener onSearchListener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Queue<FileEntry> found = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger foundCount = new AtomicInteger();
+    private final AtomicInteger pendingDirs = new AtomicInteger();
+    private volatile long lastPublishTime = 0;
+    private volatile boolean cancelled = false;
+    private ExecutorService executor;
+
+    /**
+     * 从外部存储根目录开始搜索
+     */
+    public FileSearcher() {
+        this(StorageUtils.getExternalRootPath());
+    }
+
+    public FileSearcher(String rootPath) {
+        if (rootPath == null) {
+            throw new IllegalArgumentException("Root path is null, external storage may not be mounted");
+        }
+        this.rootPath = rootPath;
+    }
+
+    public String getRootPath() {
+        return rootPath;
+    }
+
+    /**
+     * 设置名称须匹配的正则，部分匹配即可，为null则不限名称
+     */
+    public void setNamePattern(Pattern namePattern) {
+        this.namePattern = namePattern;
+    }
+
+    /**
+     * 设置允许的文件扩展名，目录不受影响
+     */
+    public void setAllowExtensions(String[] allowExtensions) {
+        this.allowExtensions = allowExtensions;
+    }
+
+    /**
+     * 是否只搜索目录
+     */
+    public void setOnlyDir(boolean onlyDir) {
+        this.onlyDir = onlyDir;
+    }
+
+    /**
+     * 是否搜索隐藏的文件及目录（以“.”开头）
+     */
+    public void setIncludeHidden(boolean includeHidden) {
+        this.includeHidden = includeHidden;
+    }
+
+    /**
+     * 设置最大遍历深度，根目录下的直接子项深度为1
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("Max depth must be positive");
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * 设置结果监听，回调均在主线程执行
+     */
+    public void setOnSearchListener(OnSearchListener onSearchListener) {
+        this.onSearchListener = onSearchListener;
+    }
+
+    /**
+     * 在后台开始搜索，立即返回
+     */
+    public void start() {
+        if (executor != null) {
+            throw new IllegalStateException("Search already started");
+        }
+        LogUtils.verbose(this, "search from " + rootPath);
+        executor = Executors.newFixedThreadPool(threadCount);
+        pendingDirs.set(1);
+        executor.execute(new WalkTask(rootPath, 1));
+    }
+
+    /**
+     * 取消搜索，之后不再回调
+     */
+    public void cancel() {
+        cancelled = true;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private boolean matches(FileEntry entry) {
+        if (onlyDir && !entry.isDirectory()) {
+            return false;
+        }
+        if (namePattern != null && !namePattern.matcher(entry.getName()).find()) {
+            return false;
+        }
+        if (entry.isDirectory() || allowExtensions == null) {
+            return true;
+        }
+        String extension = FileUtils.getExtension(entry.getName());
+        for (String allowExtension : allowExtensions) {
+            if (allowExtension.equalsIgnoreCase(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void publish(boolean force) {
+        long now = SystemClock.uptimeMillis();
+        if (!force && now - lastPublishTime < PUBLISH_INTERVAL) {
+            return;
+        }
+        lastPublishTime = now;
+        final List<FileEntry> batch = new ArrayList<>();
+        FileEntry entry;
+        while ((entry = found.poll()) != null) {
+            batch.add(entry);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!cancelled && onSearchListener != null) {
+                    onSearchListener.onSearchFound(batch);
+                }
+            }
+        });
+    }
+
+    private void finish() {
+        executor.shutdown();
+        publish(true);
+        final int count = foundCount.get();
+        LogUtils.verbose(this, "found " + count + " items from " + rootPath);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!cancelled && onSearchListener != null) {
+                    onSearchListener.onSearchFinished(count);
+                }
+            }
+        });
+    }
+
+    /**
+     * 搜索一个目录，子目录交给其他工作线程
+     */
+    private class WalkTask implements Runnable {
+        private final String dirPath;
+        private final int depth;
+
+        WalkTask(String dirPath, int depth) {
+            this.dirPath = dirPath;
+            this.depth = depth;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (cancelled) {
+                    return;
+                }
+                for (FileEntry entry : FileUtils.listEntries(dirPath, includeHidden)) {
+                    if (matches(entry)) {
+                        found.add(entry);
+                        foundCount.incrementAndGet();
+                    }
+                    if (entry.isDirectory() && depth < maxDepth && !cancelled
+                            && !FileUtils.isSymlink(new File(entry.getPath()))) {
+                        pendingDirs.incrementAndGet();
+                        try {
+                            executor.execute(new WalkTask(entry.getPath(), depth + 1));
+                        } catch (RejectedExecutionException e) {
+                            //已取消
+                            pendingDirs.decrementAndGet();
+                            return;
+                        }
+                    }
+                }
+                publish(false);
+            } finally {
+                if (pendingDirs.decrementAndGet() == 0 && !cancelled) {
+                    finish();
+                }
+            }
+        }
+
+    }
+
+    public interface OnSearchListener {
+
+        /**
+         * 找到一批匹配的文件或目录
+         */
+        void onSearchFound(List<FileEntry> entries);
+
+        /**
+         * 搜索完成，被取消时不回调
+         *
+         * @param count 匹配的总数
+         */
+        void onSearchFinished(int count);
+
+    }
+
+}
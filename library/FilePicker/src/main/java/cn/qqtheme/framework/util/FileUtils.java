@@ -1,30 +1,34 @@
 package cn.qqtheme.framework.util;
 
+import android.annotation.TargetApi;
+import android.os.Build;
 import android.support.annotation.IntDef;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
 import android.webkit.MimeTypeMap;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileFilter;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.text.CollationKey;
+import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.regex.Pattern;
 
+import cn.qqtheme.framework.entity.FileEntry;
+import cn.qqtheme.framework.entity.FileEntryStore;
+
 /**
  * 文件处理
  * <uses-permission android:name="android.permission.READ_EXTERNAL_STORAGE" />
@@ -81,62 +85,239 @@ public final class FileUtils {
         }
     }
 
+    /**
+     * 单次遍历列出指定目录下的所有子目录及文件（未排序），每项只读取一次文件属性
+     *
+     * @param includeHidden 是否包括隐藏的文件及目录（以“.”开头）
+     */
+    public static ArrayList<FileEntry> listEntries(String dirPath, boolean includeHidden) {
+        LogUtils.verbose(String.format("list entries %s", dirPath));
+        //只读取名称，避免为每项创建File对象并分别调用isDirectory、length等
+        String[] names = new File(dirPath).list();
+        if (names == null) {
+            return new ArrayList<>(0);
+        }
+        String prefix = dirPath.endsWith(File.separator) ? dirPath : dirPath + File.separator;
+        ArrayList<FileEntry> entries = new ArrayList<>(names.length);
+        for (String name : names) {
+            if (!includeHidden && name.startsWith(".")) {
+                continue;
+            }
+            FileEntry entry = statEntry(name, prefix + name);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 单次遍历列出指定目录，按类型分别追加到目录及文件两个列表中（未排序），
+     * 每项读取属性后直接存入列表，不保留{@link FileEntry}及完整路径
+     *
+     * @param includeHidden   是否包括隐藏的文件及目录（以“.”开头）
+     * @param onlyDir         是否只列出目录
+     * @param allowExtensions 允许的文件扩展名，为null则不限
+     * @return 列出的项数
+     */
+    public static int listEntries(String dirPath, boolean includeHidden, boolean onlyDir, String[] allowExtensions,
+                                  FileEntryStore dirs, FileEntryStore files) {
+        LogUtils.verbose(String.format("list entries %s", dirPath));
+        String[] names = new File(dirPath).list();
+        if (names == null) {
+            return 0;
+        }
+        String prefix = dirPath.endsWith(File.separator) ? dirPath : dirPath + File.separator;
+        int count = 0;
+        for (String name : names) {
+            if (!includeHidden && name.startsWith(".")) {
+                continue;
+            }
+            //每项的FileEntry用完即弃
+            FileEntry entry = statEntry(name, prefix + name);
+            if (entry == null) {
+                continue;
+            }
+            if (entry.isDirectory()) {
+                dirs.add(prefix, name, true, 0, entry.getLastModified());
+            } else if (!onlyDir && isAllowExtension(name, allowExtensions)) {
+                files.add(prefix, name, false, entry.getSize(), entry.getLastModified());
+            } else {
+                continue;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 一次stat调用读取类型、大小及修改时间，Android 5.0以下退化为File的方法
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static FileEntry statEntry(String name, String path) {
+        if (Build.VERSION.SDK_INT >= 21) {
+            try {
+                StructStat stat = Os.stat(path);
+                boolean isDirectory = OsConstants.S_ISDIR(stat.st_mode);
+                return new FileEntry(name, path, isDirectory, isDirectory ? 0 : stat.st_size, stat.st_mtime * 1000L);
+            } catch (ErrnoException e) {
+                //如失效的符号链接
+                LogUtils.verbose(String.format("stat %s failed: %s", path, e.getMessage()));
+                return null;
+            }
+        }
+        File file = new File(path);
+        boolean isDirectory = file.isDirectory();
+        return new FileEntry(name, path, isDirectory, isDirectory ? 0 : file.length(), file.lastModified());
+    }
+
+    /**
+     * 按允许的扩展名过滤文件，目录不受影响
+     */
+    public static ArrayList<FileEntry> filterEntries(List<FileEntry> entries, boolean onlyDir, String[] allowExtensions) {
+        return filterEntries(entries, true, onlyDir, allowExtensions);
+    }
+
+    /**
+     * 按是否隐藏及允许的扩展名过滤，保持原有顺序
+     *
+     * @param includeHidden 是否包括隐藏的文件及目录（以“.”开头）
+     */
+    public static ArrayList<FileEntry> filterEntries(List<FileEntry> entries, boolean includeHidden, boolean onlyDir, String[] allowExtensions) {
+        ArrayList<FileEntry> result = new ArrayList<>(entries.size());
+        for (FileEntry entry : entries) {
+            if (!includeHidden && entry.getName().startsWith(".")) {
+                continue;
+            }
+            if (entry.isDirectory()) {
+                result.add(entry);
+            } else if (!onlyDir && isAllowExtension(entry.getName(), allowExtensions)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    static boolean isAllowExtension(String name, String[] allowExtensions) {
+        if (allowExtensions == null) {
+            return true;
+        }
+        String extension = getExtension(name);
+        for (String allowExtension : allowExtensions) {
+            if (allowExtension.equalsIgnoreCase(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按预先读取的属性排序，比较时不再访问文件系统。
+     * 名称按当前语言自然排序（如“img2”在“img10”之前，中文按拼音），每项的排序键只计算一次。
+     * 升序时目录在前、文件在后，降序时整体倒序；按扩展名、大小或时间相同时再按名称自然排序。
+     * 注意名称顺序与{@link SortByName}等比较器不同，后者按字符逐个比较且不区分大小写，
+     * {@link SortByExtension}实际只比较名称
+     */
+    public static void sortEntries(List<FileEntry> entries, @SortType int sortType) {
+        if (sortType < BY_NAME_ASC || sortType > BY_EXTENSION_DESC) {
+            return;
+        }
+        //Collator非线程安全，每次排序使用新的实例
+        Collator collator = Collator.getInstance();
+        collator.setStrength(Collator.SECONDARY);
+        ArrayList<SortKey> keys = new ArrayList<>(entries.size());
+        for (FileEntry entry : entries) {
+            keys.add(new SortKey(entry, collator));
+        }
+        //升序与降序使用同一比较器，降序时再倒序
+        Collections.sort(keys, new SortKeyComparator(sortType - sortType % 2));
+        for (int i = 0, size = keys.size(); i < size; i++) {
+            entries.set(i, keys.get(i).entry);
+        }
+        if (sortType % 2 == 1) {
+            Collections.reverse(entries);
+        }
+    }
+
+    /**
+     * 排序紧凑存储的列表，规则同{@link #sortEntries(List, int)}，只在计算排序键时临时创建名称
+     */
+    public static void sortEntries(FileEntryStore store, @SortType int sortType) {
+        if (sortType < BY_NAME_ASC || sortType > BY_EXTENSION_DESC) {
+            return;
+        }
+        Collator collator = Collator.getInstance();
+        collator.setStrength(Collator.SECONDARY);
+        int size = store.size();
+        ArrayList<SortKey> keys = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            keys.add(new SortKey(null, i, store.getName(i), store.isDirectory(i), store.getSize(i),
+                    store.getLastModified(i), collator));
+        }
+        Collections.sort(keys, new SortKeyComparator(sortType - sortType % 2));
+        boolean reverse = sortType % 2 == 1;
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[reverse ? size - 1 - i : i] = keys.get(i).index;
+        }
+        store.reorder(order);
+    }
+
+    /**
+     * 排序文件，每个文件只读取一次属性，然后按内存中的属性排序
+     */
+    public static void sortFiles(List<File> files, @SortType int sortType) {
+        ArrayList<FileEntry> entries = new ArrayList<>(files.size());
+        for (File file : files) {
+            FileEntry entry = statEntry(file.getName(), file.getAbsolutePath());
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        sortEntries(entries, sortType);
+        files.clear();
+        for (FileEntry entry : entries) {
+            files.add(new File(entry.getPath()));
+        }
+    }
+
+    private static File[] toFiles(List<FileEntry> entries) {
+        File[] files = new File[entries.size()];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new File(entries.get(i).getPath());
+        }
+        return files;
+    }
+
     /**
      * 列出指定目录下的所有子目录
      */
     public static File[] listDirs(String startDirPath, String[] excludeDirs, @SortType int sortType) {
         LogUtils.verbose(String.format("list dir %s", startDirPath));
-        ArrayList<File> dirList = new ArrayList<File>();
-        File startDir = new File(startDirPath);
-        if (!startDir.isDirectory()) {
+        if (!new File(startDirPath).isDirectory()) {
             return new File[0];
         }
-        File[] dirs = startDir.listFiles(new FileFilter() {
-            public boolean accept(File f) {
-                if (f == null) {
-                    return false;
-                }
-                //noinspection RedundantIfStatement
-                if (f.isDirectory()) {
-                    return true;
-                }
-                return false;
+        ArrayList<FileEntry> entries = listEntries(startDirPath, true);
+        ArrayList<FileEntry> dirList = new ArrayList<>(entries.size());
+        for (FileEntry entry : entries) {
+            if (entry.isDirectory() && !contains(excludeDirs, entry.getName())) {
+                dirList.add(entry);
             }
-        });
-        if (dirs == null) {
-            return new File[0];
         }
-        if (excludeDirs == null) {
-            excludeDirs = new String[0];
+        sortEntries(dirList, sortType);
+        return toFiles(dirList);
+    }
+
+    private static boolean contains(String[] array, String item) {
+        if (array == null) {
+            return false;
         }
-        for (File dir : dirs) {
-            File file = dir.getAbsoluteFile();
-            if (!ConvertUtils.toString(excludeDirs).contains(file.getName())) {
-                dirList.add(file);
+        for (String s : array) {
+            if (s.equals(item)) {
+                return true;
             }
         }
-        if (sortType == BY_NAME_ASC) {
-            Collections.sort(dirList, new SortByName());
-        } else if (sortType == BY_NAME_DESC) {
-            Collections.sort(dirList, new SortByName());
-            Collections.reverse(dirList);
-        } else if (sortType == BY_TIME_ASC) {
-            Collections.sort(dirList, new SortByTime());
-        } else if (sortType == BY_TIME_DESC) {
-            Collections.sort(dirList, new SortByTime());
-            Collections.reverse(dirList);
-        } else if (sortType == BY_SIZE_ASC) {
-            Collections.sort(dirList, new SortBySize());
-        } else if (sortType == BY_SIZE_DESC) {
-            Collections.sort(dirList, new SortBySize());
-            Collections.reverse(dirList);
-        } else if (sortType == BY_EXTENSION_ASC) {
-            Collections.sort(dirList, new SortByExtension());
-        } else if (sortType == BY_EXTENSION_DESC) {
-            Collections.sort(dirList, new SortByExtension());
-            Collections.reverse(dirList);
-        }
-        return dirList.toArray(new File[dirList.size()]);
+        return false;
     }
 
     /**
@@ -154,23 +335,15 @@ public final class FileUtils {
     }
 
     /**
-     * 列出指定目录下的所有子目录及所有文件
+     * 列出指定目录下的所有子目录及所有文件，只遍历一次目录
      */
     public static File[] listDirsAndFiles(String startDirPath, String[] allowExtensions) {
-        File[] dirs, files, dirsAndFiles;
-        dirs = listDirs(startDirPath);
-        if (allowExtensions == null) {
-            files = listFiles(startDirPath);
-        } else {
-            files = listFiles(startDirPath, allowExtensions);
-        }
-        if (dirs == null || files == null) {
+        if (!new File(startDirPath).isDirectory()) {
             return null;
         }
-        dirsAndFiles = new File[dirs.length + files.length];
-        System.arraycopy(dirs, 0, dirsAndFiles, 0, dirs.length);
-        System.arraycopy(files, 0, dirsAndFiles, dirs.length, files.length);
-        return dirsAndFiles;
+        ArrayList<FileEntry> entries = filterEntries(listEntries(startDirPath, true), false, allowExtensions);
+        sortEntries(entries, BY_NAME_ASC);
+        return toFiles(entries);
     }
 
     /**
@@ -185,54 +358,21 @@ public final class FileUtils {
      */
     public static File[] listFiles(String startDirPath, final Pattern filterPattern, @SortType int sortType) {
         LogUtils.verbose(String.format("list file %s", startDirPath));
-        ArrayList<File> fileList = new ArrayList<File>();
-        File f = new File(startDirPath);
-        if (!f.isDirectory()) {
+        if (!new File(startDirPath).isDirectory()) {
             return new File[0];
         }
-        File[] files = f.listFiles(new FileFilter() {
-            public boolean accept(File f) {
-                if (f == null) {
-                    return false;
-                }
-                if (f.isDirectory()) {
-                    return false;
-                }
-                //noinspection SimplifiableIfStatement
-                if (filterPattern == null) {
-                    return true;
-                }
-                return filterPattern.matcher(f.getName()).find();
+        ArrayList<FileEntry> entries = listEntries(startDirPath, true);
+        ArrayList<FileEntry> fileList = new ArrayList<>(entries.size());
+        for (FileEntry entry : entries) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+            if (filterPattern == null || filterPattern.matcher(entry.getName()).find()) {
+                fileList.add(entry);
             }
-        });
-        if (files == null) {
-            return new File[0];
         }
-        for (File file : files) {
-            fileList.add(file.getAbsoluteFile());
-        }
-        if (sortType == BY_NAME_ASC) {
-            Collections.sort(fileList, new SortByName());
-        } else if (sortType == BY_NAME_DESC) {
-            Collections.sort(fileList, new SortByName());
-            Collections.reverse(fileList);
-        } else if (sortType == BY_TIME_ASC) {
-            Collections.sort(fileList, new SortByTime());
-        } else if (sortType == BY_TIME_DESC) {
-            Collections.sort(fileList, new SortByTime());
-            Collections.reverse(fileList);
-        } else if (sortType == BY_SIZE_ASC) {
-            Collections.sort(fileList, new SortBySize());
-        } else if (sortType == BY_SIZE_DESC) {
-            Collections.sort(fileList, new SortBySize());
-            Collections.reverse(fileList);
-        } else if (sortType == BY_EXTENSION_ASC) {
-            Collections.sort(fileList, new SortByExtension());
-        } else if (sortType == BY_EXTENSION_DESC) {
-            Collections.sort(fileList, new SortByExtension());
-            Collections.reverse(fileList);
-        }
-        return fileList.toArray(new File[fileList.size()]);
+        sortEntries(fileList, sortType);
+        return toFiles(fileList);
     }
 
     /**
@@ -283,45 +423,27 @@ public final class FileUtils {
     }
 
     /**
-     * 删除文件或目录
+     * 删除文件或目录，每个文件只删除一次，目录下的文件并行删除
+     *
+     * @see FileDeleter
      */
     public static boolean delete(File file, boolean deleteRootDir) {
-        LogUtils.verbose(String.format("delete file %s", file.getAbsolutePath()));
-        boolean result = false;
-        if (file.isFile()) {
-            //是文件
-            result = deleteResolveEBUSY(file);
-        } else {
-            //是目录
-            File[] files = file.listFiles();
-            if (files == null) {
-                return false;
-            }
-            if (files.length == 0) {
-                result = deleteRootDir && deleteResolveEBUSY(file);
-            } else {
-                for (File f : files) {
-                    delete(f, deleteRootDir);
-                    result = deleteResolveEBUSY(f);
-                }
-            }
-            if (deleteRootDir) {
-                result = deleteResolveEBUSY(file);
-            }
-        }
-        return result;
+        return new FileDeleter(file, deleteRootDir).delete();
     }
 
     /**
-     * bug: open failed: EBUSY (Device or resource busy)
-     * fix: http://stackoverflow.com/questions/11539657/open-failed-ebusy-device-or-resource-busy
+     * 是否为符号链接，递归遍历时跳过以免删除链接目标或陷入循环
      */
-    private static boolean deleteResolveEBUSY(File file) {
-        // Before you delete a Directory or File: rename it!
-        final File to = new File(file.getAbsolutePath() + System.currentTimeMillis());
-        //noinspection ResultOfMethodCallIgnored
-        file.renameTo(to);
-        return to.delete();
+    public static boolean isSymlink(File file) {
+        try {
+            File absolute = file.getAbsoluteFile();
+            File parent = absolute.getParentFile();
+            File canonical = parent == null ? absolute : new File(parent.getCanonicalFile(), absolute.getName());
+            return !canonical.getCanonicalFile().equals(canonical.getAbsoluteFile());
+        } catch (IOException e) {
+            LogUtils.warn(e);
+            return false;
+        }
     }
 
     /**
@@ -359,40 +481,12 @@ public final class FileUtils {
     }
 
     /**
-     * 复制文件或目录
+     * 复制文件或目录，目录下的文件并行复制
+     *
+     * @see FileCopier
      */
     public static boolean copy(File src, File tar) {
-        try {
-            LogUtils.verbose(String.format("copy %s to %s", src.getAbsolutePath(), tar.getAbsolutePath()));
-            if (src.isFile()) {
-                InputStream is = new FileInputStream(src);
-                OutputStream op = new FileOutputStream(tar);
-                BufferedInputStream bis = new BufferedInputStream(is);
-                BufferedOutputStream bos = new BufferedOutputStream(op);
-                byte[] bt = new byte[1024 * 8];
-                while (true) {
-                    int len = bis.read(bt);
-                    if (len == -1) {
-                        break;
-                    } else {
-                        bos.write(bt, 0, len);
-                    }
-                }
-                bis.close();
-                bos.close();
-            } else if (src.isDirectory()) {
-                File[] files = src.listFiles();
-                //noinspection ResultOfMethodCallIgnored
-                tar.mkdirs();
-                for (File file : files) {
-                    copy(file.getAbsoluteFile(), new File(tar.getAbsoluteFile(), file.getName()));
-                }
-            }
-            return true;
-        } catch (Exception e) {
-            LogUtils.error(e);
-            return false;
-        }
+        return new FileCopier(src, tar).copy();
     }
 
     /**
@@ -452,27 +546,11 @@ public final class FileUtils {
      */
     public static byte[] readBytes(String filepath) {
         LogUtils.verbose(String.format("read %s", filepath));
-        FileInputStream fis = null;
         try {
-            fis = new FileInputStream(filepath);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            byte[] buffer = new byte[1024];
-            while (true) {
-                int len = fis.read(buffer, 0, buffer.length);
-                if (len == -1) {
-                    break;
-                } else {
-                    baos.write(buffer, 0, len);
-                }
-            }
-            byte[] data = baos.toByteArray();
-            baos.close();
-            return data;
+            return IOUtils.readFile(new File(filepath));
         } catch (IOException e) {
             LogUtils.warn(e);
             return null;
-        } finally {
-            closeSilently(fis);
         }
     }
 
@@ -522,25 +600,16 @@ public final class FileUtils {
     }
 
     /**
-     * 追加文本内容
+     * 追加文本内容并立即写入文件，频繁追加时请直接使用{@link AppendWriter}以合并写入
      */
     public static boolean appendText(String path, String content) {
         LogUtils.verbose(String.format("append %s", path));
-        File file = new File(path);
-        FileWriter writer = null;
+        //同一路径已有打开的实例时共享其缓冲区，保证追加顺序
+        AppendWriter writer = AppendWriter.open(path);
         try {
-            if (!file.exists()) {
-                //noinspection ResultOfMethodCallIgnored
-                file.createNewFile();
-            }
-            writer = new FileWriter(file, true);
-            writer.write(content);
-            return true;
-        } catch (IOException e) {
-            LogUtils.warn(e);
-            return false;
+            return writer.append(content) && writer.flush();
         } finally {
-            closeSilently(writer);
+            writer.close();
         }
     }
 
@@ -676,6 +745,151 @@ public final class FileUtils {
         return file.mkdirs();
     }
 
+    /**
+     * Long.compare需要API 19
+     */
+    private static int compareLong(long x, long y) {
+        return x < y ? -1 : (x == y ? 0 : 1);
+    }
+
+    /**
+     * 排序前预先计算的键：名称按数字及非数字拆分，非数字部分转换为排序规则键，数字部分保留原文按数值比较
+     */
+    private static class SortKey {
+        private final FileEntry entry;//排序紧凑存储的列表时为null
+        private final int index;
+        private final String name;
+        private final boolean isDirectory;
+        private final long size;
+        private final long lastModified;
+        private final Object[] nameChunks;
+        private final String extension;
+
+        SortKey(FileEntry entry, Collator collator) {
+            this(entry, -1, entry.getName(), entry.isDirectory(), entry.getSize(), entry.getLastModified(), collator);
+        }
+
+        SortKey(FileEntry entry, int index, String name, boolean isDirectory, long size, long lastModified, Collator collator) {
+            this.entry = entry;
+            this.index = index;
+            this.name = name;
+            this.isDirectory = isDirectory;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.nameChunks = splitName(name, collator);
+            this.extension = isDirectory ? "" : getExtension(name).toLowerCase();
+        }
+
+        private static Object[] splitName(String name, Collator collator) {
+            ArrayList<Object> chunks = new ArrayList<>(4);
+            int length = name.length();
+            int start = 0;
+            while (start < length) {
+                boolean digit = isDigit(name.charAt(start));
+                int end = start + 1;
+                while (end < length && isDigit(name.charAt(end)) == digit) {
+                    end++;
+                }
+                String chunk = name.substring(start, end);
+                chunks.add(digit ? chunk : collator.getCollationKey(chunk));
+                start = end;
+            }
+            return chunks.toArray();
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        int compareName(SortKey other) {
+            Object[] chunks1 = nameChunks;
+            Object[] chunks2 = other.nameChunks;
+            int count = Math.min(chunks1.length, chunks2.length);
+            for (int i = 0; i < count; i++) {
+                Object c1 = chunks1[i];
+                Object c2 = chunks2[i];
+                int result;
+                if (c1 instanceof String && c2 instanceof String) {
+                    result = compareDigits((String) c1, (String) c2);
+                } else if (c1 instanceof CollationKey && c2 instanceof CollationKey) {
+                    result = ((CollationKey) c1).compareTo((CollationKey) c2);
+                } else {
+                    //数字在文字前面
+                    result = c1 instanceof String ? -1 : 1;
+                }
+                if (result != 0) {
+                    return result;
+                }
+            }
+            if (chunks1.length != chunks2.length) {
+                return chunks1.length < chunks2.length ? -1 : 1;
+            }
+            //排序规则认为相同（如仅大小写不同）时按原文比较，保证顺序确定
+            return name.compareTo(other.name);
+        }
+
+        /**
+         * 按数值比较两个数字串，不转换为整数以免溢出
+         */
+        private static int compareDigits(String d1, String d2) {
+            int zeros1 = 0;
+            while (zeros1 < d1.length() - 1 && d1.charAt(zeros1) == '0') {
+                zeros1++;
+            }
+            int zeros2 = 0;
+            while (zeros2 < d2.length() - 1 && d2.charAt(zeros2) == '0') {
+                zeros2++;
+            }
+            int length1 = d1.length() - zeros1;
+            int length2 = d2.length() - zeros2;
+            if (length1 != length2) {
+                return length1 < length2 ? -1 : 1;
+            }
+            for (int i = 0; i < length1; i++) {
+                char c1 = d1.charAt(zeros1 + i);
+                char c2 = d2.charAt(zeros2 + i);
+                if (c1 != c2) {
+                    return c1 < c2 ? -1 : 1;
+                }
+            }
+            //数值相同时前导0少的在前
+            return compareLong(zeros1, zeros2);
+        }
+
+    }
+
+    /**
+     * 目录在前、文件在后，同类按指定属性比较，相同时再按名称比较
+     */
+    private static class SortKeyComparator implements Comparator<SortKey> {
+        private int sortType;
+
+        SortKeyComparator(@SortType int sortType) {
+            this.sortType = sortType;
+        }
+
+        @Override
+        public int compare(SortKey k1, SortKey k2) {
+            if (k1.isDirectory != k2.isDirectory) {
+                return k1.isDirectory ? -1 : 1;
+            }
+            int result = 0;
+            if (sortType == BY_TIME_ASC) {
+                //新的在前
+                result = compareLong(k2.lastModified, k1.lastModified);
+            } else if (sortType == BY_SIZE_ASC) {
+                result = compareLong(k1.size, k2.size);
+            } else if (sortType == BY_EXTENSION_ASC) {
+                result = k1.extension.compareTo(k2.extension);
+            }
+            if (result == 0) {
+                result = k1.compareName(k2);
+            }
+            return result;
+        }
+
+    }
+
     public static class SortByExtension implements Comparator<File> {
 
         public SortByExtension() {
@@ -758,11 +972,7 @@ public final class FileUtils {
                 } else if (f1.isFile() && f2.isDirectory()) {
                     return 1;
                 } else {
-                    if (f1.length() < f2.length()) {
-                        return -1;
-                    } else {
-                        return 1;
-                    }
+                    return compareLong(f1.length(), f2.length());
                 }
             }
         }
@@ -788,11 +998,8 @@ public final class FileUtils {
                 } else if (f1.isFile() && f2.isDirectory()) {
                     return 1;
                 } else {
-                    if (f1.lastModified() > f2.lastModified()) {
-                        return -1;
-                    } else {
-                        return 1;
-                    }
+                    //新的在前
+                    return compareLong(f2.lastModified(), f1.lastModified());
                 }
             }
         }
@@ -0,0 +1,197 @@
+package cn.qqtheme.framework.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.LruCache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import cn.qqtheme.framework.entity.FileEntry;
+
+/**
+ * 目录大小计算，由固定数量的工作线程在后台递归统计，每个目录的结果在主线程中回调，
+ * 并按目录缓存，以目录的最后修改时间校验是否过期。
+ * 超过最大深度或耗时上限时停止遍历，结果标记为不完整（实际大小不小于此值）。
+ * 注意：深层文件的变化不会改变顶层目录的修改时间，此时可调用{@link #invalidate(String)}。
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @since 2018/10/23
+ */
+public class FolderSizeCalculator {
+    public static final int DEFAULT_MAX_DEPTH = 16;
+    public static final long DEFAULT_TIME_LIMIT = 3000;//毫秒
+    private static final int THREAD_COUNT = 2;
+    private static final int CACHE_SIZE = 512;
+    private static FolderSizeCalculator defaultCalculator;
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    private final LruCache<String, FolderSize> cache = new LruCache<>(CACHE_SIZE);
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private volatile int maxDepth = DEFAULT_MAX_DEPTH;
+    private volatile long timeLimit = DEFAULT_TIME_LIMIT;
+
+    /**
+     * 进程内共享的计算器
+     */
+    public static synchronized FolderSizeCalculator getDefault() {
+        if (defaultCalculator == null) {
+            defaultCalculator = new FolderSizeCalculator();
+        }
+        return defaultCalculator;
+    }
+
+    /**
+     * 设置最大遍历深度，直接子目录的深度为1
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("Max depth must be positive");
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * 设置单个目录的耗时上限，毫秒
+     */
+    public void setTimeLimit(long timeLimit) {
+        if (timeLimit <= 0) {
+            throw new IllegalArgumentException("Time limit must be positive");
+        }
+        this.timeLimit = timeLimit;
+    }
+
+    /**
+     * 获取缓存的目录大小，没有缓存或已过期则返回null
+     */
+    public FolderSize getCached(String dirPath) {
+        FolderSize folderSize = cache.get(dirPath);
+        if (folderSize == null) {
+            return null;
+        }
+        if (folderSize.lastModified != new File(dirPath).lastModified()) {
+            cache.remove(dirPath);
+            return null;
+        }
+        return folderSize;
+    }
+
+    /**
+     * 使指定目录的缓存失效
+     */
+    public void invalidate(String dirPath) {
+        cache.remove(dirPath);
+    }
+
+    /**
+     * 在后台计算目录大小，有有效缓存时也会在主线程中回调
+     *
+     * @return 可用于取消计算
+     */
+    public Future<?> calculate(final String dirPath, final OnSizeListener listener) {
+        return executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                FolderSize folderSize = getCached(dirPath);
+                if (folderSize == null) {
+                    folderSize = walk(dirPath);
+                    if (folderSize == null) {
+                        //被取消
+                        return;
+                    }
+                    cache.put(dirPath, folderSize);
+                }
+                final FolderSize result = folderSize;
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onSizeCalculated(dirPath, result);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 按深度优先遍历，不跟随符号链接，以免重复统计或陷入循环
+     */
+    private FolderSize walk(String dirPath) {
+        long lastModified = new File(dirPath).lastModified();
+        long deadline = SystemClock.uptimeMillis() + timeLimit;
+        long size = 0;
+        int fileCount = 0;
+        boolean complete = true;
+        ArrayList<String> stack = new ArrayList<>();
+        ArrayList<Integer> depths = new ArrayList<>();
+        stack.add(dirPath);
+        depths.add(0);
+        while (!stack.isEmpty()) {
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            if (SystemClock.uptimeMillis() > deadline) {
+                LogUtils.verbose(this, "folder size time limit reached: " + dirPath);
+                complete = false;
+                break;
+            }
+            int last = stack.size() - 1;
+            String path = stack.remove(last);
+            int depth = depths.remove(last);
+            for (FileEntry entry : FileUtils.listEntries(path, true)) {
+                if (!entry.isDirectory()) {
+                    size += entry.getSize();
+                    fileCount++;
+                } else if (depth >= maxDepth) {
+                    complete = false;
+                } else if (!FileUtils.isSymlink(new File(entry.getPath()))) {
+                    stack.add(entry.getPath());
+                    depths.add(depth + 1);
+                }
+            }
+        }
+        return new FolderSize(size, fileCount, complete, lastModified);
+    }
+
+    public static class FolderSize {
+        private final long size;
+        private final int fileCount;
+        private final boolean complete;
+        private final long lastModified;
+
+        FolderSize(long size, int fileCount, boolean complete, long lastModified) {
+            this.size = size;
+            this.fileCount = fileCount;
+            this.complete = complete;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * 目录下所有文件的字节数
+         */
+        public long getSize() {
+            return size;
+        }
+
+        public int getFileCount() {
+            return fileCount;
+        }
+
+        /**
+         * 是否遍历完整，超过深度或耗时上限时为false
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+
+    }
+
+    public interface OnSizeListener {
+
+        void onSizeCalculated(String dirPath, FolderSize folderSize);
+
+    }
+
+}
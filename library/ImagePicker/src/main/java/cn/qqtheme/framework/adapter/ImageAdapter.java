@@ -3,20 +3,30 @@ package cn.qqtheme.framework.adapter;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.AbsListView;
 import android.widget.BaseAdapter;
 import android.widget.ImageView;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 import cn.qqtheme.framework.http.ImageHelper;
 import cn.qqtheme.framework.util.ConvertUtils;
 
 /**
- * 图片数据适配。强烈建议设置图片宽高，不然加载网络图片时会比较杂乱
+ * 图片数据适配。强烈建议设置图片宽高，不然加载网络图片时会比较杂乱。
+ * 每个位置的图片有唯一且不变的ID（重复的图片按出现的次序各自保留原ID），
+ * 替换数据时在后台比较新旧数据，没有变化则不刷新，刷新时仍显示同一图片的视图也不重新加载。
  *
  * @author 李玉江[QQ:1032694760]
  * @since 2015/12/22
@@ -26,14 +36,34 @@ public final class ImageAdapter extends BaseAdapter {
     private static final int INTEGER = 1;
     private static final int DRAWABLE = 2;
     private static final int BITMAP = 3;
+    private static final int MEDIA_ID = 4;
     private static final int TAG_KEY_AVOID_CONFLICT_WITH_GLIDE = 0x20161023;
+    private static final ExecutorService DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+    private final Handler handler = new Handler(Looper.getMainLooper());
     private Context context;
     private int mode = STRING;
+    //数据只在主线程中整体替换，不修改原列表
     private ArrayList<?> data = new ArrayList();
+    private long[] itemIds = new long[0];
+    //主线程及比较线程都会分配ID，共用同一个计数器以免重复
+    private final AtomicLong nextItemId = new AtomicLong();
+    private int diffVersion = 0;
+    private ArrayList<Object> pendingAppends = null;//正在比较时追加的数据
+    private String mediaUri;
     private ImageView.ScaleType scaleType = ImageView.ScaleType.FIT_XY;
     private OnImageClickListener onImageClickListener;
     private int width = ViewGroup.LayoutParams.WRAP_CONTENT;
     private int height = ViewGroup.LayoutParams.WRAP_CONTENT;
+    //所有视图共用，绑定时不再创建
+    private final View.OnClickListener onClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            ViewHolder viewHolder = (ViewHolder) v.getTag(TAG_KEY_AVOID_CONFLICT_WITH_GLIDE);
+            if (onImageClickListener != null && viewHolder.position < data.size()) {
+                onImageClickListener.onImageClick(viewHolder.position, data.get(viewHolder.position));
+            }
+        }
+    };
 
     private ImageAdapter(Context context) {
         this.context = context;
@@ -44,38 +74,44 @@ public final class ImageAdapter extends BaseAdapter {
     }
 
     public ImageAdapter resources(Integer[] data) {
-        this.mode = INTEGER;
-        this.data = new ArrayList<Integer>(Arrays.asList(data));
+        setData(INTEGER, new ArrayList<Integer>(Arrays.asList(data)));
         return this;
     }
 
     public ImageAdapter resources(ArrayList<Integer> data) {
-        this.mode = INTEGER;
-        this.data = data;
+        setData(INTEGER, data);
         return this;
     }
 
     public ImageAdapter urls(String[] data) {
-        this.mode = STRING;
-        this.data = new ArrayList<String>(Arrays.asList(data));
+        setData(STRING, new ArrayList<String>(Arrays.asList(data)));
         return this;
     }
 
     public ImageAdapter urls(ArrayList<String> data) {
-        this.mode = STRING;
-        this.data = data;
+        setData(STRING, data);
         return this;
     }
 
     public ImageAdapter bitmaps(ArrayList<Bitmap> data) {
-        this.mode = BITMAP;
-        this.data = data;
+        setData(BITMAP, data);
         return this;
     }
 
     public ImageAdapter drawables(ArrayList<Drawable> data) {
-        this.mode = DRAWABLE;
-        this.data = data;
+        setData(DRAWABLE, data);
+        return this;
+    }
+
+    /**
+     * 媒体库中的图片，只保存ID，显示时才生成图片地址
+     *
+     * @param contentUri 如{@link android.provider.MediaStore.Images.Media#EXTERNAL_CONTENT_URI}
+     * @see cn.qqtheme.framework.util.GallerySource
+     */
+    public ImageAdapter mediaIds(Uri contentUri, ArrayList<Long> data) {
+        this.mediaUri = contentUri.toString();
+        setData(MEDIA_ID, data);
         return this;
     }
 
@@ -98,17 +134,128 @@ public final class ImageAdapter extends BaseAdapter {
         return this;
     }
 
+    /**
+     * 替换全部数据，在后台比较新旧数据后再刷新，没有变化则不刷新。
+     * 替换是异步的：比较完成前{@link #getCount()}、{@link #getItem(int)}仍返回旧数据，
+     * 期间调用{@link #addAll(ArrayList)}追加的数据等替换生效后再追加到新数据之后
+     */
     public void replaceAll(ArrayList data) {
-        this.data = data;
-        notifyDataSetChanged();
+        if (itemIds.length != this.data.size()) {
+            syncItemIds();
+        }
+        //比较线程只读取快照，不与主线程共用任何可变的数据
+        final Object[] oldData = this.data.toArray();
+        final long[] oldItemIds = itemIds.clone();
+        final ArrayList<?> newData = new ArrayList<Object>(data);
+        final int version = ++diffVersion;
+        pendingAppends = new ArrayList<>();
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final boolean changed = !Arrays.asList(oldData).equals(newData);
+                //相同的图片可能出现多次，按出现的次序排队，第n次出现的沿用旧数据中第n次出现的ID
+                HashMap<Object, ArrayDeque<Long>> oldIdMap = new HashMap<>(oldData.length * 4 / 3 + 1);
+                for (int i = 0; i < oldData.length; i++) {
+                    ArrayDeque<Long> ids = oldIdMap.get(oldData[i]);
+                    if (ids == null) {
+                        ids = new ArrayDeque<>(1);
+                        oldIdMap.put(oldData[i], ids);
+                    }
+                    ids.add(oldItemIds[i]);
+                }
+                final long[] newItemIds = new long[newData.size()];
+                for (int i = 0, n = newData.size(); i < n; i++) {
+                    ArrayDeque<Long> ids = oldIdMap.get(newData.get(i));
+                    Long id = ids == null ? null : ids.poll();
+                    newItemIds[i] = id == null ? nextItemId.getAndIncrement() : id;
+                }
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (version != diffVersion) {
+                            //已有更新的数据
+                            return;
+                        }
+                        ImageAdapter.this.data = newData;
+                        itemIds = newItemIds;
+                        ArrayList<Object> appends = pendingAppends;
+                        pendingAppends = null;
+                        if (!appends.isEmpty()) {
+                            addAll(appends);
+                        } else if (changed) {
+                            notifyDataSetChanged();
+                        }
+                    }
+                });
+            }
+        });
     }
 
+    /**
+     * 追加数据，已显示的视图不会重新加载。
+     * 正在替换数据时，等替换生效后再追加
+     *
+     * @see #replaceAll(ArrayList)
+     */
     public void addAll(ArrayList data) {
-        //noinspection unchecked
-        this.data.addAll(data);
+        if (data.isEmpty()) {
+            return;
+        }
+        if (pendingAppends != null) {
+            //等替换的数据比较完再追加
+            //noinspection unchecked
+            pendingAppends.addAll(data);
+            return;
+        }
+        if (itemIds.length != this.data.size()) {
+            syncItemIds();
+        }
+        ArrayList<Object> merged = new ArrayList<Object>(this.data.size() + data.size());
+        merged.addAll(this.data);
+        merged.addAll(data);
+        long[] mergedIds = Arrays.copyOf(itemIds, merged.size());
+        for (int i = this.data.size(), n = merged.size(); i < n; i++) {
+            mergedIds[i] = nextItemId.getAndIncrement();
+        }
+        this.data = merged;
+        this.itemIds = mergedIds;
         notifyDataSetChanged();
     }
 
+    /**
+     * 预取指定范围内的网络或本地图片，只对图片地址有效
+     *
+     * @param start 起始位置（含）
+     * @param end   结束位置（不含）
+     * @see ImageHelper#setPrefetchRows(int)
+     */
+    public void prefetch(int start, int end) {
+        if (mode != STRING && mode != MEDIA_ID) {
+            return;
+        }
+        ImageHelper helper = ImageHelper.getInstance();
+        for (int i = Math.max(0, start), n = Math.min(end, data.size()); i < n; i++) {
+            helper.prefetch(getImageUrl(data.get(i)), width, height, i);
+        }
+    }
+
+    /**
+     * 释放列表中各视图显示的图片，列表所在的界面或对话框销毁时调用
+     */
+    public void release(AbsListView listView) {
+        ImageHelper helper = ImageHelper.getInstance();
+        for (int i = 0, n = listView.getChildCount(); i < n; i++) {
+            View child = listView.getChildAt(i);
+            Object tag = child.getTag(TAG_KEY_AVOID_CONFLICT_WITH_GLIDE);
+            if (tag instanceof ViewHolder) {
+                ViewHolder viewHolder = (ViewHolder) tag;
+                viewHolder.mode = -1;
+                viewHolder.item = null;
+                helper.release(viewHolder.imageView);
+            }
+        }
+    }
+
     @Override
     public int getCount() {
         return data.size();
@@ -121,11 +268,23 @@ public final class ImageAdapter extends BaseAdapter {
 
     @Override
     public long getItemId(int position) {
-        return position;
+        if (itemIds.length != data.size()) {
+            //传入的列表在外部被修改过
+            syncItemIds();
+        }
+        return itemIds[position];
     }
 
+    /**
+     * 每个位置的图片ID不变，刷新时列表可复用其视图
+     */
     @Override
-    public View getView(final int position, View convertView, ViewGroup parent) {
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
         ViewHolder viewHolder;
         if (convertView == null) {
             viewHolder = new ViewHolder();
@@ -141,20 +300,20 @@ public final class ImageAdapter extends BaseAdapter {
             convertView.setLayoutParams(params);
             viewHolder.imageView = (ImageView) convertView;
             viewHolder.imageView.setScaleType(scaleType);
+            viewHolder.imageView.setOnClickListener(onClickListener);
             //加上key，避免和Glide框架冲突: You must not call setTag() on a view Glide is targeting
             convertView.setTag(TAG_KEY_AVOID_CONFLICT_WITH_GLIDE, viewHolder);
         } else {
             viewHolder = (ViewHolder) convertView.getTag(TAG_KEY_AVOID_CONFLICT_WITH_GLIDE);
         }
-        final Object item = data.get(position);
-        viewHolder.imageView.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                if (onImageClickListener != null) {
-                    onImageClickListener.onImageClick(position, item);
-                }
-            }
-        });
+        Object item = data.get(position);
+        viewHolder.position = position;
+        if (viewHolder.mode == mode && item.equals(viewHolder.item)) {
+            //仍是同一图片，无需重新加载
+            return convertView;
+        }
+        viewHolder.mode = mode;
+        viewHolder.item = item;
         switch (mode) {
             case INTEGER:
                 viewHolder.imageView.setImageResource((Integer) item);
@@ -166,12 +325,38 @@ public final class ImageAdapter extends BaseAdapter {
                 viewHolder.imageView.setImageBitmap((Bitmap) item);
                 break;
             default:
-                ImageHelper.getInstance().display(item.toString(), viewHolder.imageView, width, height);
+                ImageHelper.getInstance().display(getImageUrl(item), viewHolder.imageView, width, height, position);
                 break;
         }
         return convertView;
     }
 
+    private void setData(int mode, ArrayList<?> data) {
+        this.mode = mode;
+        this.data = data;
+        syncItemIds();
+        //之前的替换不再生效
+        diffVersion++;
+        pendingAppends = null;
+    }
+
+    /**
+     * 为每个位置分配新的ID，只在设置数据或传入的列表在外部被修改过时调用
+     */
+    private void syncItemIds() {
+        itemIds = new long[data.size()];
+        for (int i = 0, n = data.size(); i < n; i++) {
+            itemIds[i] = nextItemId.getAndIncrement();
+        }
+    }
+
+    private String getImageUrl(Object item) {
+        if (mode == MEDIA_ID) {
+            return mediaUri + "/" + item;
+        }
+        return item.toString();
+    }
+
     public interface OnImageClickListener {
 
         void onImageClick(int position, Object item);
@@ -180,6 +365,9 @@ public final class ImageAdapter extends BaseAdapter {
 
     private class ViewHolder {
         ImageView imageView;
+        int position;
+        int mode = -1;
+        Object item;
     }
 
 }
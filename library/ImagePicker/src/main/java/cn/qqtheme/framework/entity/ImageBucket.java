@@ -0,0 +1,50 @@
+package cn.qqtheme.framework.entity;
+
+/**
+ * 相册（媒体库中按所在目录分组的图片）
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @since 2018/10/28
+ */
+public class ImageBucket extends JavaBean {
+    private String id;
+    private String name;
+    private int count = 0;
+    private long coverId = -1;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    /**
+     * 封面，即最新一张图片在媒体库中的ID
+     */
+    public long getCoverId() {
+        return coverId;
+    }
+
+    public void setCoverId(long coverId) {
+        this.coverId = coverId;
+    }
+
+}
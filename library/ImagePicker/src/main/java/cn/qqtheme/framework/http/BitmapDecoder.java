@@ -0,0 +1,175 @@
+package cn.qqtheme.framework.http;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.media.ExifInterface;
+
+import cn.qqtheme.framework.util.LogUtils;
+
+/**
+ * 按目标尺寸缩放解码，并尽量复用位图池中的内存，按EXIF方向旋转
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @since 2018/10/26
+ */
+public class BitmapDecoder {
+
+    /**
+     * 解码本地图片，按图片头信息选择格式，目标宽高不大于0时按原图大小解码
+     */
+    public static Bitmap decodeFile(String path, int width, int height, BitmapPool pool) {
+        ImageProbe probe = ImageProbe.get(path);
+        if (probe == null) {
+            LogUtils.verbose("not an image: " + path);
+            return null;
+        }
+        Bitmap bitmap = decodeFile(path, probe.getWidth(), probe.getHeight(), probe.getSampleSize(width, height),
+                probe.getPreferredConfig(), pool);
+        return rotate(bitmap, probe.getOrientation(), pool);
+    }
+
+    /**
+     * 解码本地图片，目标宽高不大于0时按原图大小解码
+     */
+    public static Bitmap decodeFile(String path, int width, int height, Bitmap.Config config, BitmapPool pool) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            LogUtils.verbose("not an image: " + path);
+            return null;
+        }
+        int sampleSize = calculateSampleSize(options.outWidth, options.outHeight, width, height);
+        return decodeFile(path, options.outWidth, options.outHeight, sampleSize, config, pool);
+    }
+
+    /**
+     * 按已知的原图尺寸及缩放倍数解码
+     */
+    public static Bitmap decodeFile(String path, int outWidth, int outHeight, int sampleSize,
+                                    Bitmap.Config config, BitmapPool pool) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = config;
+        options.inMutable = true;//可变的位图不再显示后才能放入位图池复用
+        Bitmap inBitmap = null;
+        if (pool != null) {
+            int decodedWidth = (outWidth + sampleSize - 1) / sampleSize;
+            int decodedHeight = (outHeight + sampleSize - 1) / sampleSize;
+            inBitmap = pool.get(decodedWidth, decodedHeight, config, sampleSize);
+            options.inBitmap = inBitmap;
+        }
+        try {
+            return BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException e) {
+            //格式或尺寸不支持复用，不复用再解码一次
+            LogUtils.verbose("can't reuse bitmap: " + e.getMessage());
+            if (inBitmap != null) {
+                pool.put(inBitmap);
+            }
+            options.inBitmap = null;
+            return BitmapFactory.decodeFile(path, options);
+        } catch (OutOfMemoryError e) {
+            LogUtils.error(e);
+            return null;
+        }
+    }
+
+    /**
+     * 解码JPEG内嵌的EXIF缩略图，没有则返回null
+     */
+    public static Bitmap decodeExifThumbnail(ImageProbe probe) {
+        byte[] data = probe.readExifThumbnail();
+        if (data == null) {
+            return null;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = probe.getPreferredConfig();
+        options.inMutable = true;
+        try {
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        } catch (OutOfMemoryError e) {
+            LogUtils.error(e);
+            return null;
+        }
+    }
+
+    /**
+     * 按EXIF方向旋转或翻转，方向正常时原样返回。原位图不再使用，会放入位图池
+     *
+     * @param orientation 如{@link ExifInterface#ORIENTATION_ROTATE_90}
+     */
+    public static Bitmap rotate(Bitmap bitmap, int orientation, BitmapPool pool) {
+        if (bitmap == null) {
+            return null;
+        }
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.setScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.setRotate(-90);
+                break;
+            default:
+                return bitmap;
+        }
+        boolean transposed = ImageProbe.isTransposed(orientation);
+        int width = transposed ? bitmap.getHeight() : bitmap.getWidth();
+        int height = transposed ? bitmap.getWidth() : bitmap.getHeight();
+        //变换后移回原点
+        RectF bounds = new RectF(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        matrix.mapRect(bounds);
+        matrix.postTranslate(-bounds.left, -bounds.top);
+        Bitmap.Config config = bitmap.getConfig() != null ? bitmap.getConfig() : Bitmap.Config.ARGB_8888;
+        Bitmap rotated;
+        try {
+            //创建可变的位图，不再显示后同样可放入位图池
+            rotated = Bitmap.createBitmap(width, height, config);
+        } catch (OutOfMemoryError e) {
+            LogUtils.error(e);
+            return bitmap;
+        }
+        new Canvas(rotated).drawBitmap(bitmap, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        if (pool != null) {
+            pool.put(bitmap);
+        }
+        return rotated;
+    }
+
+    /**
+     * 计算缩放倍数：2的幂，且缩放后的宽高均不小于目标宽高
+     */
+    public static int calculateSampleSize(int outWidth, int outHeight, int width, int height) {
+        int sampleSize = 1;
+        if (width <= 0 || height <= 0) {
+            return sampleSize;
+        }
+        while (outWidth / (sampleSize * 2) >= width && outHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+}
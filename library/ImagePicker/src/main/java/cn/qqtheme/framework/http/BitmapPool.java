@@ -0,0 +1,120 @@
+package cn.qqtheme.framework.http;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * 可复用的位图池，解码时通过{@link android.graphics.BitmapFactory.Options#inBitmap}复用其内存，
+ * 减少大块内存的分配及GC。按总字节数限制大小，超出时回收最早放入的位图。
+ * Android 4.4以下只能复用宽高及格式完全相同、且不缩放解码的位图。
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @since 2018/10/26
+ */
+public class BitmapPool {
+    private final long maxSize;
+    private final LinkedList<Bitmap> bitmaps = new LinkedList<>();
+    private long size = 0;
+    private int hitCount = 0;
+    private int missCount = 0;
+
+    /**
+     * @param maxSize 池中位图的总字节数上限
+     */
+    public BitmapPool(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 放入不再显示的位图，不可变的位图无法复用，直接忽略
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+        int bytes = getAllocationSize(bitmap);
+        if (bytes > maxSize) {
+            bitmap.recycle();
+            return;
+        }
+        bitmaps.addLast(bitmap);
+        size += bytes;
+        while (size > maxSize) {
+            Bitmap eldest = bitmaps.removeFirst();
+            size -= getAllocationSize(eldest);
+            eldest.recycle();
+        }
+    }
+
+    /**
+     * 取出可用于解码指定尺寸的位图，没有则返回null
+     *
+     * @param sampleSize 解码时的缩放倍数，Android 4.4以下须为1才能复用
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config, int sampleSize) {
+        Iterator<Bitmap> iterator = bitmaps.iterator();
+        while (iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+            if (canReuse(bitmap, width, height, config, sampleSize)) {
+                iterator.remove();
+                size -= getAllocationSize(bitmap);
+                hitCount++;
+                return bitmap;
+            }
+        }
+        missCount++;
+        return null;
+    }
+
+    public synchronized void clear() {
+        for (Bitmap bitmap : bitmaps) {
+            bitmap.recycle();
+        }
+        bitmaps.clear();
+        size = 0;
+    }
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    private static boolean canReuse(Bitmap bitmap, int width, int height, Bitmap.Config config, int sampleSize) {
+        if (Build.VERSION.SDK_INT >= 19) {
+            return getAllocationSize(bitmap) >= width * height * getBytesPerPixel(config);
+        }
+        return sampleSize == 1 && bitmap.getWidth() == width && bitmap.getHeight() == height
+                && bitmap.getConfig() == config;
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static int getAllocationSize(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= 19) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    private static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        }
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        return 4;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BitmapPool[size=" + size + "/" + maxSize + ", hits=" + hitCount + ", misses=" + missCount + "]";
+    }
+
+}
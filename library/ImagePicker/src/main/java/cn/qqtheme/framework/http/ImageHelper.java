@@ -1,21 +1,23 @@
 package cn.qqtheme.framework.http;
 
-import android.content.Context;
-import android.graphics.Bitmap;
+import android.os.SystemClock;
 import android.widget.AbsListView;
+import android.widget.GridView;
+import android.widget.HeaderViewListAdapter;
 import android.widget.ImageView;
+import android.widget.ListAdapter;
 
-import com.squareup.picasso.Picasso;
-import com.squareup.picasso.RequestCreator;
+import java.util.WeakHashMap;
 
-import cn.qqtheme.framework.util.LogUtils;
+import cn.qqtheme.framework.adapter.ImageAdapter;
 
 /**
  * <uses-permission android:name="android.permission.READ_EXTERNAL_STORAGE" />
  * <uses-permission android:name="android.permission.WRITE_EXTERNAL_STORAGE" />
  * <p>
  * 集成第三方图片加载框架（如：Glide、Picasso、Universal-Image-Loader、Fresco），
- * 遵循“高内聚低耦合”原则，实现本类即可更换框架内核，降低各模块之间的依赖。
+ * 遵循“高内聚低耦合”原则，实现{@link ImageLoadEngine}并通过{@link #setEngine(ImageLoadEngine)}即可更换框架内核，
+ * 降低各模块之间的依赖。默认使用不依赖第三方框架的{@link ImageLoader}。
  * <p>
  * UIL：https://github.com/nostra13/Android-Universal-Image-Loader
  * Picasso：https://github.com/square/picasso
@@ -29,8 +31,12 @@ import cn.qqtheme.framework.util.LogUtils;
 public class ImageHelper implements ImageLoadEngine, AbsListView.OnScrollListener {
     public static final int PLACEHOLDER_LOADING = android.R.drawable.ic_menu_report_image;
     public static final int PLACEHOLDER_FAILURE = android.R.drawable.ic_menu_report_image;
+    public static final int DEFAULT_PREFETCH_ROWS = 4;
     private static ImageHelper instance;
-    private Context context;
+    private ImageLoadEngine engine;
+    private int prefetchRows = DEFAULT_PREFETCH_ROWS;
+    //各列表的滑动状态，列表销毁后自动移除
+    private final WeakHashMap<AbsListView, ScrollState> scrollStates = new WeakHashMap<>();
 
     private ImageHelper() {
     }
@@ -42,6 +48,34 @@ public class ImageHelper implements ImageLoadEngine, AbsListView.OnScrollListene
         return instance;
     }
 
+    /**
+     * 更换图片加载引擎，默认为内置的{@link ImageLoader}，如需使用Picasso可设置为{@link PicassoEngine}
+     */
+    public void setEngine(ImageLoadEngine engine) {
+        if (engine == null) {
+            throw new IllegalArgumentException("engine can't be null");
+        }
+        this.engine = engine;
+    }
+
+    /**
+     * 设置滑动时预取的行数，0则不预取。快速滑动或内存不足时会自动减少。
+     * 只对内置引擎及{@link ImageAdapter}有效。
+     */
+    public void setPrefetchRows(int prefetchRows) {
+        if (prefetchRows < 0) {
+            throw new IllegalArgumentException("prefetch rows can't be negative");
+        }
+        this.prefetchRows = prefetchRows;
+    }
+
+    public ImageLoadEngine getEngine() {
+        if (engine == null) {
+            engine = ImageLoader.getInstance();
+        }
+        return engine;
+    }
+
     @Override
     public void display(String urlOrPath, ImageView view) {
         display(urlOrPath, view, -1, -1);
@@ -49,38 +83,60 @@ public class ImageHelper implements ImageLoadEngine, AbsListView.OnScrollListene
 
     @Override
     public void display(String urlOrPath, ImageView view, int width, int height) {
-        LogUtils.verbose("Image>>>" + urlOrPath);
-        if (null == context) {
-            context = view.getContext();
+        getEngine().display(urlOrPath, view, width, height);
+    }
+
+    /**
+     * 显示列表中的图片，内置引擎会优先加载离可见区域近的，其他引擎同{@link #display(String, ImageView, int, int)}
+     *
+     * @param position 在列表中的位置
+     */
+    public void display(String urlOrPath, ImageView view, int width, int height, int position) {
+        ImageLoadEngine engine = getEngine();
+        if (engine instanceof ImageLoader) {
+            ((ImageLoader) engine).display(urlOrPath, view, width, height, position);
+        } else {
+            engine.display(urlOrPath, view, width, height);
         }
-        RequestCreator creator = Picasso.with(context).load(urlOrPath);
-        creator.placeholder(PLACEHOLDER_LOADING);
-        creator.error(PLACEHOLDER_FAILURE);
-        creator.config(urlOrPath.endsWith(".png") ? Bitmap.Config.ARGB_8888 : Bitmap.Config.RGB_565);
-        if (width > 0 && height > 0) {
-            creator.resize(width, height);
+    }
+
+    /**
+     * 预取图片到内存缓存，只对内置引擎有效
+     *
+     * @param position 在列表中的位置
+     */
+    public void prefetch(String urlOrPath, int width, int height, int position) {
+        ImageLoadEngine engine = getEngine();
+        if (engine instanceof ImageLoader) {
+            ((ImageLoader) engine).prefetch(urlOrPath, width, height, position);
+        }
+    }
+
+    /**
+     * 释放视图显示的图片，只对内置引擎有效，其他引擎由其自行管理
+     *
+     * @see ImageLoader#release(ImageView)
+     */
+    public void release(ImageView view) {
+        ImageLoadEngine engine = getEngine();
+        if (engine instanceof ImageLoader) {
+            ((ImageLoader) engine).release(view);
         }
-        creator.into(view);
     }
 
     @Override
     public void onScrollFling(AbsListView view) {
-        if (null == context) {
-            context = view.getContext();
-        }
-        Picasso.with(context).pauseTag(view);
+        getEngine().onScrollFling(view);
     }
 
     @Override
     public void onScrollFinish(AbsListView view) {
-        if (null == context) {
-            context = view.getContext();
-        }
-        Picasso.with(context).resumeTag(view);
+        getEngine().onScrollFinish(view);
     }
 
     @Override
     public final void onScrollStateChanged(AbsListView view, int scrollState) {
+        obtainScrollState(view).flinging = scrollState == SCROLL_STATE_FLING;
         if (scrollState == SCROLL_STATE_FLING) {
             onScrollFling(view);
         } else {
@@ -90,6 +146,108 @@ public class ImageHelper implements ImageLoadEngine, AbsListView.OnScrollListene
 
     @Override
     public void onScroll(AbsListView view, int firstVisibleItem, int visibleItems, int totalItems) {
+        ImageLoadEngine engine = getEngine();
+        if (!(engine instanceof ImageLoader) || visibleItems <= 0) {
+            return;
+        }
+        ImageLoader loader = (ImageLoader) engine;
+        ListAdapter adapter = view.getAdapter();
+        int headers = 0;
+        if (adapter instanceof HeaderViewListAdapter) {
+            headers = ((HeaderViewListAdapter) adapter).getHeadersCount();
+            adapter = ((HeaderViewListAdapter) adapter).getWrappedAdapter();
+        }
+        int first = Math.max(0, firstVisibleItem - headers);
+        loader.setVisibleRange(first, visibleItems);
+        if (adapter instanceof ImageAdapter) {
+            prefetch(view, loader, (ImageAdapter) adapter, first, visibleItems);
+        }
+    }
+
+    private ScrollState obtainScrollState(AbsListView view) {
+        ScrollState state = scrollStates.get(view);
+        if (state == null) {
+            state = new ScrollState();
+            scrollStates.put(view, state);
+        }
+        return state;
+    }
+
+    /**
+     * 按滑动方向预取接下来的若干行，快速滑动时减少预取行数，内存不足时只预取一行
+     */
+    private void prefetch(AbsListView view, ImageLoader loader, ImageAdapter adapter, int first, int visibleItems) {
+        ScrollState state = obtainScrollState(view);
+        if (state.adapter != adapter) {
+            //更换了适配器，之前的滑动及预取记录不再适用
+            state.reset(adapter);
+        }
+        long now = SystemClock.uptimeMillis();
+        int moved = state.lastFirstVisible < 0 ? 0 : first - state.lastFirstVisible;
+        if (moved != 0) {
+            state.scrollDirection = moved > 0 ? 1 : -1;
+        }
+        int columns = 1;
+        if (view instanceof GridView) {
+            columns = Math.max(1, ((GridView) view).getNumColumns());
+        }
+        int rows = prefetchRows;
+        if (state.flinging && moved != 0) {
+            //越快解码越跟不上，预取得越远越浪费，每秒滑过的行数越多预取越少
+            float rowsPerSecond = Math.abs(moved) * 1000f / columns / Math.max(1, now - state.lastScrollTime);
+            rows = rowsPerSecond > 20 ? 1 : Math.max(1, rows / 2);
+        }
+        if (isLowMemory()) {
+            rows = Math.min(rows, 1);
+        }
+        state.lastFirstVisible = first;
+        state.lastScrollTime = now;
+        int count = rows * columns;
+        int start, end;
+        if (state.scrollDirection > 0) {
+            start = first + visibleItems;
+            end = Math.min(adapter.getCount(), start + count);
+        } else {
+            end = first;
+            start = Math.max(0, end - count);
+        }
+        if (start == state.lastPrefetchStart && end == state.lastPrefetchEnd) {
+            return;
+        }
+        state.lastPrefetchStart = start;
+        state.lastPrefetchEnd = end;
+        //滑动方向变化或已滑过的预取不再需要
+        loader.cancelPrefetch(start, end);
+        adapter.prefetch(start, end);
+    }
+
+    private static boolean isLowMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long maxMemory = runtime.maxMemory();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return maxMemory - used < maxMemory / 8;
+    }
+
+    /**
+     * 单个列表的滑动状态，多个列表各自预取互不影响
+     */
+    private static class ScrollState {
+        private ImageAdapter adapter;
+        private boolean flinging = false;
+        private int lastFirstVisible = -1;
+        private long lastScrollTime = 0;
+        private int scrollDirection = 1;
+        private int lastPrefetchStart = -1;
+        private int lastPrefetchEnd = -1;
+
+        void reset(ImageAdapter adapter) {
+            this.adapter = adapter;
+            lastFirstVisible = -1;
+            lastScrollTime = 0;
+            scrollDirection = 1;
+            lastPrefetchStart = -1;
+            lastPrefetchEnd = -1;
+        }
 
     }
 
@@ -0,0 +1,550 @@
+package cn.qqtheme.framework.http;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.provider.MediaStore;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.widget.AbsListView;
+import android.widget.ImageView;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import cn.qqtheme.framework.util.LogUtils;
+
+/**
+ * 内置的图片加载引擎，不依赖第三方框架：
+ * 内存缓存按路径及目标尺寸缓存解码后的位图并按字节数限制大小；
+ * 磁盘缓存保存缩小后的缩略图，再次打开时无需解码原图；
+ * 按目标尺寸以inSampleSize缩放解码，并通过位图池以inBitmap复用不再显示的位图。
+ * 只能在主线程中调用。
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @see ImageHelper#setEngine(ImageLoadEngine)
+ * @since 2018/10/26
+ */
+public class ImageLoader implements ImageLoadEngine {
+    public static final long DEFAULT_DISK_CACHE_SIZE = 50 * 1024 * 1024;
+    private static final int THREAD_COUNT = 3;
+    private static final int TIMEOUT = 15000;
+    private static final String THUMBNAIL_DIR = "thumbnails";
+    private static ImageLoader instance;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final RequestScheduler scheduler = new RequestScheduler(THREAD_COUNT);
+    private final BitmapPool bitmapPool;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final long diskCacheSize;
+    private ThumbnailCache thumbnailCache;
+    private File tempDir;
+    private ContentResolver contentResolver;
+    //视图正在等待的请求，同一图片的多个视图及预取共用一个请求
+    private final WeakHashMap<ImageView, Request> requests = new WeakHashMap<>();
+    private final HashMap<String, Request> inflightRequests = new HashMap<>();
+    //正在显示的位图不能放入位图池，视图被回收后其记录自动移除
+    private final WeakHashMap<ImageView, Bitmap> displayedBitmaps = new WeakHashMap<>();
+    //已移出内存缓存但仍在显示的位图，弱引用：显示它的视图被回收后位图随之被回收，不再等待放入位图池
+    private final Set<Bitmap> evictedBitmaps = Collections.newSetFromMap(new WeakHashMap<Bitmap, Boolean>());
+    private final ArrayList<Request> pausedRequests = new ArrayList<>();
+    private boolean paused = false;
+
+    /**
+     * @param memoryCacheSize 内存缓存的字节数上限
+     * @param poolSize        位图池的字节数上限
+     * @param diskCacheSize   缩略图磁盘缓存的字节数上限
+     */
+    public ImageLoader(int memoryCacheSize, long poolSize, long diskCacheSize) {
+        this.bitmapPool = new BitmapPool(poolSize);
+        this.diskCacheSize = diskCacheSize;
+        this.memoryCache = new LruCache<String, Bitmap>(memoryCacheSize) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (oldValue != newValue) {
+                    onBitmapRemoved(oldValue);
+                }
+            }
+        };
+    }
+
+    /**
+     * 默认实例：内存缓存为最大可用内存的1/8，位图池为1/16，磁盘缓存为50MB
+     */
+    public static ImageLoader getInstance() {
+        if (instance == null) {
+            long maxMemory = Runtime.getRuntime().maxMemory();
+            instance = new ImageLoader((int) (maxMemory / 8), maxMemory / 16, DEFAULT_DISK_CACHE_SIZE);
+        }
+        return instance;
+    }
+
+    @Override
+    public void display(String urlOrPath, ImageView view) {
+        display(urlOrPath, view, -1, -1);
+    }
+
+    @Override
+    public void display(String urlOrPath, ImageView view, int width, int height) {
+        display(urlOrPath, view, width, height, RequestScheduler.NO_POSITION);
+    }
+
+    /**
+     * 显示列表中的图片，离可见区域越近的越先加载
+     *
+     * @param position 在列表中的位置
+     * @see #setVisibleRange(int, int)
+     */
+    public void display(String urlOrPath, ImageView view, int width, int height, int position) {
+        LogUtils.verbose(this, "Image>>>" + urlOrPath);
+        if (thumbnailCache == null) {
+            Context context = view.getContext().getApplicationContext();
+            File cacheDir = context.getCacheDir();
+            thumbnailCache = new ThumbnailCache(new File(cacheDir, THUMBNAIL_DIR), diskCacheSize);
+            tempDir = cacheDir;
+            contentResolver = context.getContentResolver();
+        }
+        Request previous = requests.remove(view);
+        if (previous != null && !previous.prefetch && !requests.containsValue(previous)) {
+            //视图已被复用，旧的请求不再需要
+            cancel(previous);
+        }
+        String key = createKey(urlOrPath, width, height);
+        Bitmap bitmap = memoryCache.get(key);
+        if (bitmap != null) {
+            bind(view, bitmap);
+            return;
+        }
+        bindPlaceholder(view, ImageHelper.PLACEHOLDER_LOADING);
+        Request request = inflightRequests.get(key);
+        if (request != null) {
+            //已在加载（如已被预取），等待其结果即可
+            request.prefetch = false;
+            requests.put(view, request);
+            return;
+        }
+        request = new Request(urlOrPath, key, width, height, position, false);
+        inflightRequests.put(key, request);
+        requests.put(view, request);
+        if (paused) {
+            pausedRequests.add(request);
+        } else {
+            scheduler.schedule(request);
+        }
+    }
+
+    /**
+     * 预取列表中的图片到内存缓存，显示时无需再等待解码。
+     * 快速滑动时也不暂停，调用方应控制预取的数量。
+     *
+     * @param position 在列表中的位置
+     * @see #cancelPrefetch(int, int)
+     */
+    public void prefetch(String urlOrPath, int width, int height, int position) {
+        if (thumbnailCache == null) {
+            //还未显示过图片
+            return;
+        }
+        String key = createKey(urlOrPath, width, height);
+        if (inflightRequests.containsKey(key) || memoryCache.get(key) != null) {
+            return;
+        }
+        Request request = new Request(urlOrPath, key, width, height, position, true);
+        inflightRequests.put(key, request);
+        scheduler.schedule(request);
+    }
+
+    /**
+     * 取消位置不在指定范围内的预取，如滑动方向改变后
+     *
+     * @param start 起始位置（含）
+     * @param end   结束位置（不含）
+     */
+    public void cancelPrefetch(int start, int end) {
+        Iterator<Request> iterator = inflightRequests.values().iterator();
+        while (iterator.hasNext()) {
+            Request request = iterator.next();
+            int position = request.getPosition();
+            if (request.prefetch && (position < start || position >= end)) {
+                iterator.remove();
+                scheduler.cancel(request);
+            }
+        }
+    }
+
+    /**
+     * 更新列表的可见区域，等待加载的图片按离可见区域的距离重新排序
+     */
+    public void setVisibleRange(int firstVisible, int visibleCount) {
+        scheduler.setVisibleRange(firstVisible, visibleCount);
+    }
+
+    /**
+     * 快速滑动时暂停加载，新的请求等到停止后再开始
+     */
+    @Override
+    public void onScrollFling(AbsListView view) {
+        paused = true;
+    }
+
+    @Override
+    public void onScrollFinish(AbsListView view) {
+        if (!paused) {
+            return;
+        }
+        paused = false;
+        for (Request request : pausedRequests) {
+            if (!request.isCancelled()) {
+                scheduler.schedule(request);
+            }
+        }
+        pausedRequests.clear();
+    }
+
+    /**
+     * 清空内存缓存及位图池，如内存不足时
+     */
+    public void clearMemory() {
+        cancelPrefetch(0, 0);
+        memoryCache.evictAll();
+        //仍在显示的位图不再放入位图池，不再显示后由GC回收
+        evictedBitmaps.clear();
+        bitmapPool.clear();
+    }
+
+    /**
+     * 释放视图：取消其未完成的请求并清除显示的图片，以便位图可被复用。
+     * 列表或对话框销毁时应调用，如{@link cn.qqtheme.framework.adapter.ImageAdapter#release(AbsListView)}
+     */
+    public void release(ImageView view) {
+        Request request = requests.remove(view);
+        if (request != null && !request.prefetch && !requests.containsValue(request)) {
+            cancel(request);
+        }
+        view.setImageDrawable(null);
+        unbind(view);
+    }
+
+    /**
+     * 清空缩略图磁盘缓存
+     */
+    public void clearDiskCache() {
+        if (thumbnailCache != null) {
+            thumbnailCache.clear();
+        }
+    }
+
+    public BitmapPool getBitmapPool() {
+        return bitmapPool;
+    }
+
+    /**
+     * 调度器，可获取排队数、白费的解码数等统计信息
+     */
+    public RequestScheduler getScheduler() {
+        return scheduler;
+    }
+
+    private void bind(ImageView view, Bitmap bitmap) {
+        view.setImageBitmap(bitmap);
+        unbind(view);
+        displayedBitmaps.put(view, bitmap);
+    }
+
+    private void bindPlaceholder(ImageView view, int resId) {
+        view.setImageResource(resId);
+        unbind(view);
+    }
+
+    /**
+     * 视图不再显示原来的位图，若位图已移出内存缓存且没有其他视图显示，则放入位图池
+     */
+    private void unbind(ImageView view) {
+        Bitmap bitmap = displayedBitmaps.remove(view);
+        if (bitmap != null && evictedBitmaps.contains(bitmap) && !isDisplayed(bitmap)) {
+            evictedBitmaps.remove(bitmap);
+            bitmapPool.put(bitmap);
+        }
+    }
+
+    /**
+     * 只统计仍存活的视图，显示中的视图不多，遍历即可
+     */
+    private boolean isDisplayed(Bitmap bitmap) {
+        for (Bitmap displayed : displayedBitmaps.values()) {
+            if (displayed == bitmap) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void onBitmapRemoved(Bitmap bitmap) {
+        if (isDisplayed(bitmap)) {
+            //仍在显示，等不再显示时再放入位图池
+            evictedBitmaps.add(bitmap);
+        } else {
+            bitmapPool.put(bitmap);
+        }
+    }
+
+    private void deliver(Request request, Bitmap bitmap) {
+        if (bitmap != null) {
+            Bitmap cached = memoryCache.get(request.key);
+            if (cached == null) {
+                //超过缓存上限的大图不放入缓存，否则会立即被移出并回收
+                if (bitmap.getByteCount() <= memoryCache.maxSize()) {
+                    memoryCache.put(request.key, bitmap);
+                }
+            } else {
+                //同一图片被重复解码，多余的直接复用
+                bitmapPool.put(bitmap);
+                bitmap = cached;
+            }
+        }
+        if (inflightRequests.get(request.key) == request) {
+            inflightRequests.remove(request.key);
+        }
+        if (request.isCancelled()) {
+            if (bitmap != null) {
+                scheduler.recordWasted();
+            }
+            return;
+        }
+        ArrayList<ImageView> views = new ArrayList<>();
+        Iterator<Map.Entry<ImageView, Request>> iterator = requests.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<ImageView, Request> entry = iterator.next();
+            if (entry.getValue() == request) {
+                iterator.remove();
+                if (entry.getKey() != null) {
+                    views.add(entry.getKey());
+                }
+            }
+        }
+        if (views.isEmpty() && !request.prefetch && bitmap != null) {
+            //视图已被复用或已销毁
+            scheduler.recordWasted();
+        }
+        for (ImageView view : views) {
+            if (bitmap == null) {
+                bindPlaceholder(view, ImageHelper.PLACEHOLDER_FAILURE);
+            } else {
+                bind(view, bitmap);
+            }
+        }
+    }
+
+    private void cancel(Request request) {
+        if (inflightRequests.get(request.key) == request) {
+            inflightRequests.remove(request.key);
+        }
+        scheduler.cancel(request);
+    }
+
+    private static String createKey(String urlOrPath, int width, int height) {
+        return urlOrPath + "@" + width + "x" + height;
+    }
+
+    /**
+     * 在工作线程中加载：先查磁盘缓存的缩略图，再按图片头信息选择格式及缩放倍数解码原图
+     * （网络图片先下载到临时文件），目标尺寸较小时直接使用EXIF缩略图，解码后按EXIF方向旋转
+     */
+    private Bitmap load(Request request) {
+        String urlOrPath = request.urlOrPath;
+        boolean remote = isRemote(urlOrPath);
+        String path = urlOrPath.startsWith("file://") ? urlOrPath.substring(7) : urlOrPath;
+        if (urlOrPath.startsWith("content://")) {
+            //媒体库中的图片，解码前才查询其文件路径
+            path = queryPath(Uri.parse(urlOrPath));
+            if (path == null) {
+                return null;
+            }
+        }
+        ImageProbe probe = null;
+        if (!remote) {
+            //图片头信息有内存缓存，先读取以便按方向区分磁盘缓存
+            probe = ImageProbe.get(path);
+            if (probe == null) {
+                LogUtils.verbose(this, "not an image: " + urlOrPath);
+                return null;
+            }
+        }
+        boolean useDiskCache = remote || (request.width > 0 && request.height > 0);
+        String diskKey = null;
+        if (useDiskCache) {
+            long lastModified = remote ? 0 : new File(path).lastModified();
+            int orientation = remote ? -1 : probe.getOrientation();
+            diskKey = ThumbnailCache.key(urlOrPath, request.width, request.height, lastModified, orientation);
+            File thumbnail = thumbnailCache.get(diskKey);
+            if (thumbnail != null) {
+                //有透明通道的缩略图保存为PNG，同样按文件头选择格式，缩略图已旋转
+                ImageProbe thumbnailProbe = ImageProbe.probe(thumbnail.getPath());
+                if (thumbnailProbe != null) {
+                    Bitmap bitmap = BitmapDecoder.decodeFile(thumbnail.getPath(), thumbnailProbe.getWidth(),
+                            thumbnailProbe.getHeight(), 1, thumbnailProbe.getPreferredConfig(), bitmapPool);
+                    if (bitmap != null) {
+                        return bitmap;
+                    }
+                }
+            }
+        }
+        File tempFile = null;
+        try {
+            if (remote) {
+                tempFile = download(urlOrPath);
+                if (tempFile == null) {
+                    return null;
+                }
+                path = tempFile.getPath();
+            }
+            if (request.isCancelled()) {
+                return null;
+            }
+            if (remote) {
+                probe = ImageProbe.probe(path);
+                if (probe == null) {
+                    LogUtils.verbose(this, "not an image: " + urlOrPath);
+                    return null;
+                }
+            }
+            if (probe.canUseExifThumbnail(request.width, request.height)) {
+                Bitmap bitmap = BitmapDecoder.decodeExifThumbnail(probe);
+                if (bitmap != null) {
+                    return BitmapDecoder.rotate(bitmap, probe.getOrientation(), bitmapPool);
+                }
+            }
+            int sampleSize = probe.getSampleSize(request.width, request.height);
+            Bitmap bitmap = BitmapDecoder.decodeFile(path, probe.getWidth(), probe.getHeight(), sampleSize,
+                    probe.getPreferredConfig(), bitmapPool);
+            bitmap = BitmapDecoder.rotate(bitmap, probe.getOrientation(), bitmapPool);
+            if (bitmap != null && useDiskCache && (remote || sampleSize > 1)) {
+                //只缓存比原图小的缩略图，否则直接解码原图即可
+                thumbnailCache.put(diskKey, bitmap);
+            }
+            return bitmap;
+        } finally {
+            if (tempFile != null) {
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+            }
+        }
+    }
+
+    private String queryPath(Uri uri) {
+        Cursor cursor = null;
+        try {
+            cursor = contentResolver.query(uri, new String[]{MediaStore.MediaColumns.DATA}, null, null, null);
+            if (cursor != null && cursor.moveToFirst()) {
+                return cursor.getString(0);
+            }
+            LogUtils.verbose(this, "no such media: " + uri);
+            return null;
+        } catch (RuntimeException e) {
+            LogUtils.warn(this, e);
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    private File download(String url) {
+        HttpURLConnection connection = null;
+        InputStream is = null;
+        FileOutputStream fos = null;
+        File file = null;
+        try {
+            file = File.createTempFile("image", ".tmp", tempDir);
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(TIMEOUT);
+            connection.setReadTimeout(TIMEOUT);
+            is = connection.getInputStream();
+            fos = new FileOutputStream(file);
+            byte[] buffer = new byte[8 * 1024];
+            int len;
+            while ((len = is.read(buffer)) != -1) {
+                fos.write(buffer, 0, len);
+            }
+            return file;
+        } catch (IOException e) {
+            LogUtils.warn(this, e);
+            if (file != null) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+            return null;
+        } finally {
+            closeSilently(is);
+            closeSilently(fos);
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static void closeSilently(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static boolean isRemote(String urlOrPath) {
+        return urlOrPath.startsWith("http://") || urlOrPath.startsWith("https://");
+    }
+
+    private class Request extends RequestScheduler.Task {
+        private final String urlOrPath;
+        private final String key;
+        private final int width;
+        private final int height;
+        //只在主线程中读写
+        private boolean prefetch;
+
+        Request(String urlOrPath, String key, int width, int height, int position, boolean prefetch) {
+            super(position);
+            this.urlOrPath = urlOrPath;
+            this.key = key;
+            this.width = width;
+            this.height = height;
+            this.prefetch = prefetch;
+        }
+
+        @Override
+        protected void execute() {
+            final Bitmap bitmap = load(this);
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(Request.this, bitmap);
+                }
+            });
+        }
+
+    }
+
+}
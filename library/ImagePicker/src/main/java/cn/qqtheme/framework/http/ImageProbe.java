@@ -0,0 +1,299 @@
+package cn.qqtheme.framework.http;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.ExifInterface;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import cn.qqtheme.framework.util.LogUtils;
+
+/**
+ * 图片头信息：宽高、格式、是否有透明通道、EXIF方向及缩略图尺寸，只读取文件头，不解码像素。
+ * 按路径缓存，文件的修改时间或大小变化后重新读取。
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @since 2018/10/28
+ */
+public class ImageProbe {
+    private static final int CACHE_SIZE = 1024;
+    private static final int MAX_PNG_CHUNKS = 64;
+    //EXIF缩略图与原图的宽高比相差不超过5%才使用，避免被加了黑边的缩略图
+    private static final float EXIF_ASPECT_TOLERANCE = 0.05f;
+    private static final LruCache<String, ImageProbe> CACHE = new LruCache<>(CACHE_SIZE);
+    private final String path;
+    private final long lastModified;
+    private final long length;
+    private int width;
+    private int height;
+    private String mimeType;
+    private boolean hasAlpha;
+    private int orientation = ExifInterface.ORIENTATION_NORMAL;
+    private int exifThumbnailWidth = 0;
+    private int exifThumbnailHeight = 0;
+
+    private ImageProbe(String path, long lastModified, long length) {
+        this.path = path;
+        this.lastModified = lastModified;
+        this.length = length;
+    }
+
+    /**
+     * 获取图片头信息，优先从缓存中获取，不是图片则返回null
+     */
+    public static ImageProbe get(String path) {
+        File file = new File(path);
+        ImageProbe probe = CACHE.get(path);
+        if (probe != null && probe.lastModified == file.lastModified() && probe.length == file.length()) {
+            return probe;
+        }
+        probe = probe(path);
+        if (probe != null) {
+            CACHE.put(path, probe);
+        } else {
+            CACHE.remove(path);
+        }
+        return probe;
+    }
+
+    /**
+     * 只从缓存中获取图片头信息，不读取文件，可在主线程中调用
+     */
+    public static ImageProbe peek(String path) {
+        return CACHE.get(path);
+    }
+
+    /**
+     * 读取图片头信息，不使用缓存，如临时文件。不是图片则返回null
+     */
+    public static ImageProbe probe(String path) {
+        File file = new File(path);
+        ImageProbe probe = new ImageProbe(path, file.lastModified(), file.length());
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        probe.width = options.outWidth;
+        probe.height = options.outHeight;
+        probe.mimeType = options.outMimeType;
+        probe.hasAlpha = readAlpha(file);
+        if ("image/jpeg".equals(probe.mimeType)) {
+            probe.readExif();
+        }
+        return probe;
+    }
+
+    public static void clearCache() {
+        CACHE.evictAll();
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 如：image/jpeg、image/png、image/webp，未知时可能为null
+     */
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public boolean hasAlpha() {
+        return hasAlpha;
+    }
+
+    /**
+     * 有透明通道的用ARGB_8888，否则用占一半内存的RGB_565
+     */
+    public Bitmap.Config getPreferredConfig() {
+        return hasAlpha ? Bitmap.Config.ARGB_8888 : Bitmap.Config.RGB_565;
+    }
+
+    /**
+     * EXIF中的方向，如{@link ExifInterface#ORIENTATION_ROTATE_90}，解码后需按此旋转才是正常的方向，
+     * 不是JPEG或没有该信息时为{@link ExifInterface#ORIENTATION_NORMAL}
+     */
+    public int getOrientation() {
+        return orientation;
+    }
+
+    /**
+     * 是否需要旋转90或270度，此时显示的宽高与存储的宽高互换
+     */
+    public boolean isTransposed() {
+        return isTransposed(orientation);
+    }
+
+    public static boolean isTransposed(int orientation) {
+        return orientation == ExifInterface.ORIENTATION_TRANSPOSE
+                || orientation == ExifInterface.ORIENTATION_ROTATE_90
+                || orientation == ExifInterface.ORIENTATION_TRANSVERSE
+                || orientation == ExifInterface.ORIENTATION_ROTATE_270;
+    }
+
+    /**
+     * 按显示的目标宽高计算缩放倍数，已考虑旋转
+     */
+    public int getSampleSize(int targetWidth, int targetHeight) {
+        if (isTransposed()) {
+            return BitmapDecoder.calculateSampleSize(width, height, targetHeight, targetWidth);
+        }
+        return BitmapDecoder.calculateSampleSize(width, height, targetWidth, targetHeight);
+    }
+
+    /**
+     * 目标尺寸不超过EXIF缩略图且宽高比一致时，可直接使用EXIF缩略图而无需解码原图
+     */
+    public boolean canUseExifThumbnail(int targetWidth, int targetHeight) {
+        if (exifThumbnailWidth <= 0 || targetWidth <= 0 || targetHeight <= 0) {
+            return false;
+        }
+        if (isTransposed()) {
+            //缩略图与原图的存储方向相同，与显示的宽高互换
+            int temp = targetWidth;
+            targetWidth = targetHeight;
+            targetHeight = temp;
+        }
+        if (exifThumbnailWidth < targetWidth || exifThumbnailHeight < targetHeight) {
+            return false;
+        }
+        float ratio = (float) width / height;
+        float thumbnailRatio = (float) exifThumbnailWidth / exifThumbnailHeight;
+        return Math.abs(ratio - thumbnailRatio) <= ratio * EXIF_ASPECT_TOLERANCE;
+    }
+
+    /**
+     * 读取EXIF缩略图的数据，没有则返回null
+     */
+    public byte[] readExifThumbnail() {
+        try {
+            return new ExifInterface(path).getThumbnail();
+        } catch (IOException e) {
+            LogUtils.warn(this, e);
+            return null;
+        }
+    }
+
+    /**
+     * 读取方向及缩略图尺寸
+     */
+    private void readExif() {
+        byte[] thumbnail;
+        try {
+            ExifInterface exif = new ExifInterface(path);
+            orientation = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            thumbnail = exif.getThumbnail();
+        } catch (IOException e) {
+            LogUtils.warn(this, e);
+            return;
+        }
+        if (thumbnail == null) {
+            return;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(thumbnail, 0, thumbnail.length, options);
+        if (options.outWidth > 0 && options.outHeight > 0) {
+            exifThumbnailWidth = options.outWidth;
+            exifThumbnailHeight = options.outHeight;
+        }
+    }
+
+    /**
+     * 按文件头判断是否有透明通道，无法判断的按有透明通道处理
+     */
+    private static boolean readAlpha(File file) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            byte[] header = new byte[32];
+            int read = raf.read(header);
+            if (read >= 2 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8) {
+                //JPEG
+                return false;
+            }
+            if (read >= 26 && (header[0] & 0xFF) == 0x89 && header[1] == 'P' && header[2] == 'N' && header[3] == 'G') {
+                return readPngAlpha(raf, header[25]);
+            }
+            if (read >= 25 && header[0] == 'R' && header[1] == 'I' && header[2] == 'F' && header[3] == 'F'
+                    && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+                return readWebpAlpha(header);
+            }
+            if (read >= 30 && header[0] == 'B' && header[1] == 'M') {
+                //BMP，32位色才可能有透明通道
+                return ((header[28] & 0xFF) | (header[29] & 0xFF) << 8) == 32;
+            }
+            return true;
+        } catch (IOException e) {
+            LogUtils.warn(e);
+            return true;
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * 带透明通道的颜色类型，或在图像数据之前有tRNS块的
+     */
+    private static boolean readPngAlpha(RandomAccessFile raf, byte colorType) throws IOException {
+        if (colorType == 4 || colorType == 6) {
+            return true;
+        }
+        long position = 8;
+        byte[] chunk = new byte[8];
+        for (int i = 0; i < MAX_PNG_CHUNKS; i++) {
+            raf.seek(position);
+            if (raf.read(chunk) != chunk.length) {
+                return false;
+            }
+            long chunkLength = ((chunk[0] & 0xFFL) << 24) | ((chunk[1] & 0xFF) << 16)
+                    | ((chunk[2] & 0xFF) << 8) | (chunk[3] & 0xFF);
+            String type = new String(chunk, 4, 4, "US-ASCII");
+            if ("tRNS".equals(type)) {
+                return true;
+            }
+            if ("IDAT".equals(type) || "IEND".equals(type)) {
+                return false;
+            }
+            position += 12 + chunkLength;//长度、类型、数据及CRC
+        }
+        return false;
+    }
+
+    private static boolean readWebpAlpha(byte[] header) {
+        if (header[12] == 'V' && header[13] == 'P' && header[14] == '8') {
+            if (header[15] == 'X') {
+                //扩展格式，标志位中的透明通道位
+                return (header[20] & 0x10) != 0;
+            }
+            if (header[15] == 'L') {
+                //无损格式，签名之后的28位宽高后即透明通道位
+                int bits = (header[21] & 0xFF) | (header[22] & 0xFF) << 8
+                        | (header[23] & 0xFF) << 16 | (header[24] & 0xFF) << 24;
+                return ((bits >> 28) & 1) != 0;
+            }
+            //有损格式没有透明通道
+            return false;
+        }
+        return true;
+    }
+
+}
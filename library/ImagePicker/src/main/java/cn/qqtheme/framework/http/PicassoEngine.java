@@ -0,0 +1,67 @@
+package cn.qqtheme.framework.http;
+
+import android.content.Context;
+import android.widget.AbsListView;
+import android.widget.ImageView;
+
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
+
+import cn.qqtheme.framework.util.LogUtils;
+
+/**
+ * 基于Picasso的图片加载引擎，需自行添加Picasso依赖：
+ * <pre>
+ * compile 'com.squareup.picasso:picasso:latest.release'
+ * </pre>
+ * Picasso：https://github.com/square/picasso
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @see ImageHelper#setEngine(ImageLoadEngine)
+ * @since 2018/10/26
+ */
+public class PicassoEngine implements ImageLoadEngine {
+    private Context context;
+
+    @Override
+    public void display(String urlOrPath, ImageView view) {
+        display(urlOrPath, view, -1, -1);
+    }
+
+    @Override
+    public void display(String urlOrPath, ImageView view, int width, int height) {
+        LogUtils.verbose("Image>>>" + urlOrPath);
+        if (null == context) {
+            context = view.getContext();
+        }
+        RequestCreator creator = Picasso.with(context).load(urlOrPath);
+        creator.placeholder(ImageHelper.PLACEHOLDER_LOADING);
+        creator.error(ImageHelper.PLACEHOLDER_FAILURE);
+        //已读取过头信息的本地图片按是否有透明通道选择格式，否则用Picasso默认的ARGB_8888
+        ImageProbe probe = ImageProbe.peek(urlOrPath.startsWith("file://") ? urlOrPath.substring(7) : urlOrPath);
+        if (probe != null) {
+            creator.config(probe.getPreferredConfig());
+        }
+        if (width > 0 && height > 0) {
+            creator.resize(width, height);
+        }
+        creator.into(view);
+    }
+
+    @Override
+    public void onScrollFling(AbsListView view) {
+        if (null == context) {
+            context = view.getContext();
+        }
+        Picasso.with(context).pauseTag(view);
+    }
+
+    @Override
+    public void onScrollFinish(AbsListView view) {
+        if (null == context) {
+            context = view.getContext();
+        }
+        Picasso.with(context).resumeTag(view);
+    }
+
+}
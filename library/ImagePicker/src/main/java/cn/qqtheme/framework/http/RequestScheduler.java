@@ -0,0 +1,183 @@
+package cn.qqtheme.framework.http;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 图片请求调度器：固定数量的解码线程，等待中的请求按离可见区域的距离排序，
+ * 可见的先加载，离得越远越晚加载；视图被复用后其旧请求可直接从队列中移除。
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @since 2018/10/27
+ */
+public class RequestScheduler {
+    public static final int NO_POSITION = -1;
+    private final ThreadPoolExecutor executor;
+    private final PriorityBlockingQueue<Runnable> queue;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger completedCount = new AtomicInteger();
+    private final AtomicInteger cancelledCount = new AtomicInteger();
+    private final AtomicInteger wastedCount = new AtomicInteger();
+    private int firstVisible = 0;
+    private int visibleCount = 0;
+
+    /**
+     * @param threadCount 解码线程数
+     */
+    public RequestScheduler(int threadCount) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("thread count must be greater than 0");
+        }
+        queue = new PriorityBlockingQueue<>(16, new Comparator<Runnable>() {
+            @Override
+            public int compare(Runnable lhs, Runnable rhs) {
+                Task l = (Task) lhs;
+                Task r = (Task) rhs;
+                if (l.priority != r.priority) {
+                    return l.priority < r.priority ? -1 : 1;
+                }
+                return l.sequence < r.sequence ? -1 : (l.sequence == r.sequence ? 0 : 1);
+            }
+        });
+        executor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS, queue) {
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                if (((Task) r).executed) {
+                    completedCount.incrementAndGet();
+                }
+            }
+        };
+    }
+
+    /**
+     * 更新可见区域，等待中的请求按新的距离重新排序
+     */
+    public synchronized void setVisibleRange(int firstVisible, int visibleCount) {
+        if (this.firstVisible == firstVisible && this.visibleCount == visibleCount) {
+            return;
+        }
+        this.firstVisible = firstVisible;
+        this.visibleCount = visibleCount;
+        ArrayList<Runnable> pending = new ArrayList<>(queue.size());
+        queue.drainTo(pending);
+        for (Runnable runnable : pending) {
+            Task task = (Task) runnable;
+            task.priority = distance(task.position);
+            queue.offer(task);
+        }
+    }
+
+    public synchronized void schedule(Task task) {
+        task.priority = distance(task.position);
+        task.sequence = sequence.getAndIncrement();
+        executor.execute(task);
+    }
+
+    /**
+     * 取消请求，还未开始的直接从队列中移除
+     */
+    public void cancel(Task task) {
+        task.cancelled = true;
+        if (executor.remove(task)) {
+            cancelledCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 记录一次白费的解码：已解码完成，但视图已被复用或已销毁
+     */
+    public void recordWasted() {
+        wastedCount.incrementAndGet();
+    }
+
+    /**
+     * 等待中的请求数
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * 正在解码的请求数
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * 已执行完的请求数
+     */
+    public int getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * 开始解码前就被取消的请求数
+     */
+    public int getCancelledCount() {
+        return cancelledCount.get();
+    }
+
+    public int getWastedCount() {
+        return wastedCount.get();
+    }
+
+    private int distance(int position) {
+        if (position == NO_POSITION || visibleCount <= 0) {
+            return 0;
+        }
+        if (position < firstVisible) {
+            return firstVisible - position;
+        }
+        int lastVisible = firstVisible + visibleCount - 1;
+        return position > lastVisible ? position - lastVisible : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestScheduler[queue=" + getQueueSize() + ", active=" + getActiveCount()
+                + ", completed=" + getCompletedCount() + ", cancelled=" + getCancelledCount()
+                + ", wasted=" + getWastedCount() + "]";
+    }
+
+    /**
+     * 可调度的请求，位置为其在列表中的索引，不在列表中时为{@link #NO_POSITION}
+     */
+    public abstract static class Task implements Runnable {
+        private final int position;
+        private int priority;
+        private long sequence;
+        private volatile boolean cancelled = false;
+        private boolean executed = false;
+
+        public Task(int position) {
+            this.position = position;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public final void run() {
+            if (cancelled) {
+                return;
+            }
+            executed = true;
+            execute();
+        }
+
+        protected abstract void execute();
+
+    }
+
+}
@@ -0,0 +1,176 @@
+package cn.qqtheme.framework.http;
+
+import android.graphics.Bitmap;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import cn.qqtheme.framework.util.LogUtils;
+
+/**
+ * 缩略图磁盘缓存，按原图路径、目标尺寸及原图修改时间生成文件名，
+ * 按总大小限制，超出时删除最久未使用的缩略图
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @since 2018/10/26
+ */
+public class ThumbnailCache {
+    private static final int QUALITY = 85;
+    private final File directory;
+    private final long maxSize;
+    private long size = -1;//首次写入时才统计
+
+    /**
+     * @param maxSize 所有缩略图的总字节数上限
+     */
+    public ThumbnailCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 生成缓存键
+     *
+     * @param lastModified 原图的修改时间，原图变化后缓存自然失效，网络图片传0
+     * @param orientation  原图的EXIF方向，缓存的缩略图已按此旋转，网络图片下载前无法得知，传-1
+     */
+    public static String key(String urlOrPath, int width, int height, long lastModified, int orientation) {
+        return md5(urlOrPath + "@" + width + "x" + height + "#" + lastModified + "/" + orientation);
+    }
+
+    /**
+     * 获取缩略图文件，不存在则返回null
+     */
+    public File get(String key) {
+        File file = new File(directory, key);
+        if (!file.isFile()) {
+            return null;
+        }
+        //以修改时间记录最近使用时间
+        //noinspection ResultOfMethodCallIgnored
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * 保存缩略图，有透明通道的保存为PNG，否则为JPEG
+     */
+    public boolean put(String key, Bitmap bitmap) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            return false;
+        }
+        File file = new File(directory, key);
+        File tmp = new File(directory, key + ".tmp");
+        FileOutputStream fos = null;
+        try {
+            fos = new FileOutputStream(tmp);
+            Bitmap.CompressFormat format = bitmap.hasAlpha() ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG;
+            if (!bitmap.compress(format, QUALITY, fos)) {
+                return false;
+            }
+            fos.close();
+            fos = null;
+            //先写临时文件再重命名，避免读到不完整的缩略图
+            if (!tmp.renameTo(file)) {
+                return false;
+            }
+            addSize(file.length());
+            return true;
+        } catch (IOException e) {
+            LogUtils.warn(this, e);
+            return false;
+        } finally {
+            if (fos != null) {
+                try {
+                    fos.close();
+                } catch (IOException ignored) {
+                }
+            }
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+        }
+    }
+
+    public synchronized void clear() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        size = 0;
+    }
+
+    private synchronized void addSize(long bytes) {
+        if (size < 0) {
+            size = 0;
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    size += file.length();
+                }
+            }
+        } else {
+            size += bytes;
+        }
+        if (size > maxSize) {
+            trim();
+        }
+    }
+
+    /**
+     * 删除最久未使用的缩略图，直到总大小不超过上限的九成
+     */
+    private void trim() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        final long[] times = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            times[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                return times[lhs] < times[rhs] ? -1 : (times[lhs] == times[rhs] ? 0 : 1);
+            }
+        });
+        long target = maxSize * 9 / 10;
+        for (Integer index : order) {
+            if (size <= target) {
+                break;
+            }
+            long length = files[index].length();
+            if (files[index].delete()) {
+                size -= length;
+            }
+        }
+        LogUtils.verbose(this, "thumbnail cache trimmed to " + size);
+    }
+
+    private static String md5(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(text.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            //不会发生
+            return String.valueOf(text.hashCode());
+        }
+    }
+
+}
@@ -0,0 +1,244 @@
+package cn.qqtheme.framework.util;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.MediaStore;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import cn.qqtheme.framework.adapter.ImageAdapter;
+import cn.qqtheme.framework.entity.ImageBucket;
+
+/**
+ * 从媒体库分页读取图片，无需先扫描整个存储卡。只查询ID及所在相册，
+ * 每读到一页即在主线程中回调，图片地址等到显示时才生成。
+ * 可传入自定义的{@link ContentResolver}及URI，以便使用模拟的ContentProvider测试。
+ * <p>
+ * 需要权限：android.permission.READ_EXTERNAL_STORAGE
+ *
+ * @author 李玉江[QQ:1032694760]
+ * @since 2018/10/28
+ */
+public class GallerySource {
+    public static final int DEFAULT_PAGE_SIZE = 200;
+    private static final String[] PROJECTION = {
+            MediaStore.Images.Media._ID,
+            MediaStore.Images.Media.BUCKET_ID,
+            MediaStore.Images.Media.BUCKET_DISPLAY_NAME
+    };
+    private static final String SORT_ORDER = MediaStore.Images.Media.DATE_MODIFIED + " DESC, "
+            + MediaStore.Images.Media._ID + " DESC";
+    private final ContentResolver resolver;
+    private final Uri contentUri;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private String bucketId = null;
+    private OnGalleryListener onGalleryListener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private volatile boolean cancelled = false;
+    private ExecutorService executor;
+
+    /**
+     * 读取外部存储的图片
+     */
+    public GallerySource(Context context) {
+        this(context.getContentResolver(), MediaStore.Images.Media.EXTERNAL_CONTENT_URI);
+    }
+
+    public GallerySource(ContentResolver resolver, Uri contentUri) {
+        if (resolver == null || contentUri == null) {
+            throw new IllegalArgumentException("Resolver and content uri can't be null");
+        }
+        this.resolver = resolver;
+        this.contentUri = contentUri;
+    }
+
+    public Uri getContentUri() {
+        return contentUri;
+    }
+
+    /**
+     * 设置每页的图片数，每读满一页回调一次
+     */
+    public void setPageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * 只读取指定相册的图片，为null则读取所有图片
+     *
+     * @see ImageBucket#getId()
+     */
+    public void setBucketId(String bucketId) {
+        this.bucketId = bucketId;
+    }
+
+    /**
+     * 设置结果监听，回调均在主线程执行
+     */
+    public void setOnGalleryListener(OnGalleryListener onGalleryListener) {
+        this.onGalleryListener = onGalleryListener;
+    }
+
+    /**
+     * 在后台开始读取，立即返回
+     */
+    public void start() {
+        if (executor != null) {
+            throw new IllegalStateException("Gallery already started");
+        }
+        executor = Executors.newSingleThreadExecutor();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                query();
+            }
+        });
+        executor.shutdown();
+    }
+
+    /**
+     * 在后台开始读取，每页图片直接追加到适配器中
+     */
+    public void start(final ImageAdapter adapter) {
+        adapter.mediaIds(contentUri, new ArrayList<Long>());
+        final OnGalleryListener listener = onGalleryListener;
+        setOnGalleryListener(new OnGalleryListener() {
+            @Override
+            public void onGalleryPage(ArrayList<Long> ids) {
+                adapter.addAll(ids);
+                if (listener != null) {
+                    listener.onGalleryPage(ids);
+                }
+            }
+
+            @Override
+            public void onGalleryFinished(List<ImageBucket> buckets, int count) {
+                if (listener != null) {
+                    listener.onGalleryFinished(buckets, count);
+                }
+            }
+        });
+        start();
+    }
+
+    /**
+     * 取消读取，之后不再回调
+     */
+    public void cancel() {
+        cancelled = true;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void query() {
+        String selection = null;
+        String[] selectionArgs = null;
+        if (bucketId != null) {
+            selection = MediaStore.Images.Media.BUCKET_ID + "=?";
+            selectionArgs = new String[]{bucketId};
+        }
+        LinkedHashMap<String, ImageBucket> buckets = new LinkedHashMap<>();
+        int count = 0;
+        Cursor cursor = null;
+        try {
+            cursor = resolver.query(contentUri, PROJECTION, selection, selectionArgs, SORT_ORDER);
+            if (cursor == null) {
+                LogUtils.warn(this, "query " + contentUri + " failed");
+                return;
+            }
+            int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media._ID);
+            int bucketIdColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.BUCKET_ID);
+            int bucketNameColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.BUCKET_DISPLAY_NAME);
+            ArrayList<Long> page = new ArrayList<>(pageSize);
+            //游标按窗口分段读取，逐行遍历不会一次性载入全部结果
+            while (!cancelled && cursor.moveToNext()) {
+                long id = cursor.getLong(idColumn);
+                page.add(id);
+                count++;
+                String bucket = cursor.getString(bucketIdColumn);
+                ImageBucket imageBucket = buckets.get(bucket);
+                if (imageBucket == null) {
+                    imageBucket = new ImageBucket();
+                    imageBucket.setId(bucket);
+                    imageBucket.setName(cursor.getString(bucketNameColumn));
+                    imageBucket.setCoverId(id);//按时间倒序，第一张即最新的
+                    buckets.put(bucket, imageBucket);
+                }
+                imageBucket.setCount(imageBucket.getCount() + 1);
+                if (page.size() >= pageSize) {
+                    publish(page);
+                    page = new ArrayList<>(pageSize);
+                }
+            }
+            publish(page);
+        } catch (RuntimeException e) {
+            //如没有权限或媒体库不可用
+            LogUtils.warn(this, e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        LogUtils.verbose(this, "loaded " + count + " images in " + buckets.size() + " buckets");
+        final List<ImageBucket> result = new ArrayList<>(buckets.values());
+        final int total = count;
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!cancelled && onGalleryListener != null) {
+                    onGalleryListener.onGalleryFinished(result, total);
+                }
+            }
+        });
+    }
+
+    private void publish(final ArrayList<Long> page) {
+        if (page.isEmpty()) {
+            return;
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!cancelled && onGalleryListener != null) {
+                    onGalleryListener.onGalleryPage(page);
+                }
+            }
+        });
+    }
+
+    public interface OnGalleryListener {
+
+        /**
+         * 读到一页图片
+         *
+         * @param ids 图片在媒体库中的ID，与{@link #getContentUri()}拼接即为图片地址
+         */
+        void onGalleryPage(ArrayList<Long> ids);
+
+        /**
+         * 读取完成
+         *
+         * @param buckets 按最新图片排序的相册
+         * @param count   图片总数
+         */
+        void onGalleryFinished(List<ImageBucket> buckets, int count);
+
+    }
+
+}
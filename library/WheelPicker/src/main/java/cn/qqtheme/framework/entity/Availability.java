@@ -0,0 +1,127 @@
+package cn.qqtheme.framework.entity;
+
+import android.util.SparseArray;
+
+import java.util.BitSet;
+
+/**
+ * 日期时间的可用性，用于预约等场景屏蔽不可选的日子及时段。
+ * 默认全部可用，仅记录不可用的位：每年的日子占一个366位的位图，
+ * 每天的时段（精确到分钟）占一个1440位的位图，一整年的数据也只需几十KB，查询为O(1)。
+ * <br/>
+ * Author:李玉江[QQ:1032694760]
+ * DateTime:2018/10/20 10:12
+ * Builder:Android Studio
+ *
+ * @see cn.qqtheme.framework.picker.DateTimePicker#setAvailability(Availability)
+ */
+public class Availability {
+    private static final int DAYS_OF_YEAR = 366;
+    private static final int MINUTES_OF_DAY = 24 * 60;
+    private static final int[] DAYS_BEFORE_MONTH = {0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334};
+    private SparseArray<BitSet> unavailableDays = new SparseArray<>();//键为年份，位为一年中的第几天
+    private SparseArray<BitSet> unavailableSlots = new SparseArray<>();//键为yyyyMMdd，位为一天中的第几分钟
+    private BitSet dailyUnavailableSlots = new BitSet(MINUTES_OF_DAY);//每天都不可用的时段
+
+    /**
+     * 设置某一天是否可用
+     */
+    public void setDayAvailable(int year, int month, int day, boolean available) {
+        BitSet bits = unavailableDays.get(year);
+        if (bits == null) {
+            if (available) {
+                return;
+            }
+            bits = new BitSet(DAYS_OF_YEAR);
+            unavailableDays.put(year, bits);
+        }
+        bits.set(dayOfYear(year, month, day), !available);
+    }
+
+    /**
+     * 设置某一天中从某时分开始的若干分钟是否可用
+     */
+    public void setTimeAvailable(int year, int month, int day, int hour, int minute, int minutes, boolean available) {
+        int key = dayKey(year, month, day);
+        BitSet bits = unavailableSlots.get(key);
+        if (bits == null) {
+            if (available) {
+                return;
+            }
+            bits = new BitSet(MINUTES_OF_DAY);
+            unavailableSlots.put(key, bits);
+        }
+        setSlots(bits, hour, minute, minutes, available);
+    }
+
+    /**
+     * 设置每天从某时分开始的若干分钟是否可用，如午休时间
+     */
+    public void setDailyTimeAvailable(int hour, int minute, int minutes, boolean available) {
+        setSlots(dailyUnavailableSlots, hour, minute, minutes, available);
+    }
+
+    /**
+     * 某一天是否可用
+     */
+    public boolean isAvailable(int year, int month, int day) {
+        BitSet bits = unavailableDays.get(year);
+        return bits == null || !bits.get(dayOfYear(year, month, day));
+    }
+
+    /**
+     * 某一天的某时分是否可用
+     */
+    public boolean isAvailable(int year, int month, int day, int hour, int minute) {
+        if (!isAvailable(hour, minute) || !isAvailable(year, month, day)) {
+            return false;
+        }
+        BitSet bits = unavailableSlots.get(dayKey(year, month, day));
+        return bits == null || !bits.get(minuteOfDay(hour, minute));
+    }
+
+    /**
+     * 每天的某时分是否可用，不考虑具体日期
+     */
+    public boolean isAvailable(int hour, int minute) {
+        return !dailyUnavailableSlots.get(minuteOfDay(hour, minute));
+    }
+
+    /**
+     * 清空所有设置，恢复为全部可用
+     */
+    public void clear() {
+        unavailableDays.clear();
+        unavailableSlots.clear();
+        dailyUnavailableSlots.clear();
+    }
+
+    private static void setSlots(BitSet bits, int hour, int minute, int minutes, boolean available) {
+        int from = minuteOfDay(hour, minute);
+        int to = Math.min(from + minutes, MINUTES_OF_DAY);
+        bits.set(from, to, !available);
+    }
+
+    private static int minuteOfDay(int hour, int minute) {
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            throw new IllegalArgumentException("Time out of range");
+        }
+        return hour * 60 + minute;
+    }
+
+    private static int dayKey(int year, int month, int day) {
+        return year * 10000 + month * 100 + day;
+    }
+
+    private static int dayOfYear(int year, int month, int day) {
+        if (month < 1 || month > 12 || day < 1 || day > 31) {
+            throw new IllegalArgumentException("Date out of range");
+        }
+        int index = DAYS_BEFORE_MONTH[month - 1] + day - 1;
+        if (month > 2 && ((year % 4 == 0 && year % 100 != 0) || year % 400 == 0)) {
+            index++;//闰年二月多一天
+        }
+        return index;
+    }
+
+}
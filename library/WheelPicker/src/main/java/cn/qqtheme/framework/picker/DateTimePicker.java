@@ -15,10 +15,11 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Locale;
 
+import cn.qqtheme.framework.entity.Availability;
 import cn.qqtheme.framework.util.DateUtils;
 import cn.qqtheme.framework.util.LogUtils;
+import cn.qqtheme.framework.util.TimeSource;
 import cn.qqtheme.framework.widget.WheelView;
 
 /**
@@ -67,19 +68,27 @@ public class DateTimePicker extends WheelPicker {
     private ArrayList<String> years = new ArrayList<>();
     private ArrayList<String> months = new ArrayList<>();
     private ArrayList<String> days = new ArrayList<>();
+    private ArrayList<String> previousDays = new ArrayList<>();
     private ArrayList<String> hours = new ArrayList<>();
     private ArrayList<String> minutes = new ArrayList<>();
+    private ArrayList<String> seconds = new ArrayList<>();
     private String yearLabel = "年", monthLabel = "月", dayLabel = "日";
-    private String hourLabel = "时", minuteLabel = "分";
+    private String hourLabel = "时", minuteLabel = "分", secondLabel = "秒";
     private int selectedYearIndex = 0, selectedMonthIndex = 0, selectedDayIndex = 0;
-    private String selectedHour = "", selectedMinute = "";
+    private String selectedHour = "", selectedMinute = "", selectedSecond = "";
     private OnWheelListener onWheelListener;
     private OnDateTimePickListener onDateTimePickListener;
     private int dateMode = YEAR_MONTH_DAY, timeMode = HOUR_24;
     private int startYear = 2010, startMonth = 1, startDay = 1;
     private int endYear = 2020, endMonth = 12, endDay = 31;
-    private int startHour, startMinute = 0;
-    private int endHour, endMinute = 59;
+    private int startHour, startMinute = 0, startSecond = 0;
+    private int endHour, endMinute = 59, endSecond = 59;
+    private int minuteStep = 1, secondStep = 1;
+    private boolean secondVisible = false;
+    private Availability availability;
+    private TimeSource timeSource = TimeSource.SYSTEM;
+    private Calendar now;//当前时间的快照，每次弹出只读取一次，避免跨零点时前后不一致
+    private boolean submitting = false;//提交过程中先关闭弹窗，此时需保留当前时间的快照
     private int textSize = WheelView.TEXT_SIZE;
     private boolean resetWhileWheel = true;
 
@@ -188,7 +197,7 @@ public class DateTimePicker extends WheelPicker {
             this.startYear = startYearOrMonth;
             this.startMonth = startMonthOrDay;
         } else if (dateMode == MONTH_DAY) {
-            int year = Calendar.getInstance(Locale.CHINA).get(Calendar.YEAR);
+            int year = now().get(Calendar.YEAR);
             startYear = endYear = year;
             this.startMonth = startYearOrMonth;
             this.startDay = startMonthOrDay;
@@ -220,11 +229,18 @@ public class DateTimePicker extends WheelPicker {
      * 设置范围：开始的时分
      */
     public void setTimeRangeStart(int startHour, int startMinute) {
+        setTimeRangeStart(startHour, startMinute, 0);
+    }
+
+    /**
+     * 设置范围：开始的时分秒，秒仅在{@link #setSecondVisible(boolean)}后生效
+     */
+    public void setTimeRangeStart(int startHour, int startMinute, int startSecond) {
         if (timeMode == NONE) {
             throw new IllegalArgumentException("Time mode invalid");
         }
         boolean illegal = false;
-        if (startHour < 0 || startMinute < 0 || startMinute > 59) {
+        if (startHour < 0 || startMinute < 0 || startMinute > 59 || startSecond < 0 || startSecond > 59) {
             illegal = true;
         }
         if (timeMode == HOUR_12 && (startHour == 0 || startHour > 12)) {
@@ -238,6 +254,7 @@ public class DateTimePicker extends WheelPicker {
         }
         this.startHour = startHour;
         this.startMinute = startMinute;
+        this.startSecond = startSecond;
         initHourData();
     }
 
@@ -245,11 +262,18 @@ public class DateTimePicker extends WheelPicker {
      * 设置范围：结束的时分
      */
     public void setTimeRangeEnd(int endHour, int endMinute) {
+        setTimeRangeEnd(endHour, endMinute, 59);
+    }
+
+    /**
+     * 设置范围：结束的时分秒，秒仅在{@link #setSecondVisible(boolean)}后生效
+     */
+    public void setTimeRangeEnd(int endHour, int endMinute, int endSecond) {
         if (timeMode == NONE) {
             throw new IllegalArgumentException("Time mode invalid");
         }
         boolean illegal = false;
-        if (endHour < 0 || endMinute < 0 || endMinute > 59) {
+        if (endHour < 0 || endMinute < 0 || endMinute > 59 || endSecond < 0 || endSecond > 59) {
             illegal = true;
         }
         if (timeMode == HOUR_12 && (endHour == 0 || endHour > 12)) {
@@ -263,9 +287,68 @@ public class DateTimePicker extends WheelPicker {
         }
         this.endHour = endHour;
         this.endMinute = endMinute;
+        this.endSecond = endSecond;
         initHourData();
     }
 
+    /**
+     * 设置分钟的步长，如5、15、30分钟一档，默认为1
+     */
+    public void setMinuteStep(int minuteStep) {
+        if (timeMode == NONE) {
+            throw new IllegalArgumentException("Time mode invalid");
+        }
+        if (minuteStep < 1 || minuteStep > 30) {
+            throw new IllegalArgumentException("Step out of range [1-30]");
+        }
+        this.minuteStep = minuteStep;
+        minutes.clear();
+    }
+
+    /**
+     * 设置秒的步长，默认为1
+     */
+    public void setSecondStep(int secondStep) {
+        if (timeMode == NONE) {
+            throw new IllegalArgumentException("Time mode invalid");
+        }
+        if (secondStep < 1 || secondStep > 30) {
+            throw new IllegalArgumentException("Step out of range [1-30]");
+        }
+        this.secondStep = secondStep;
+        seconds.clear();
+    }
+
+    /**
+     * 是否显示秒，默认不显示
+     */
+    public void setSecondVisible(boolean secondVisible) {
+        if (timeMode == NONE) {
+            throw new IllegalArgumentException("Time mode invalid");
+        }
+        this.secondVisible = secondVisible;
+    }
+
+    /**
+     * 设置当前时间的来源，默认为系统时间
+     */
+    public void setTimeSource(@NonNull TimeSource timeSource) {
+        this.timeSource = timeSource;
+        now = null;
+    }
+
+    /**
+     * 设置可用的日期时间，不可用的月、日、时、分在滚轮中将被跳过。
+     * 某个范围内全部不可用时仍显示全部选项以免滚轮为空，但选中不可用的日期时间时不会回调提交
+     */
+    public void setAvailability(Availability availability) {
+        this.availability = availability;
+        months.clear();
+        days.clear();
+        hours.clear();
+        minutes.clear();
+    }
+
     /**
      * 设置年月日时分的显示单位
      */
@@ -277,6 +360,13 @@ public class DateTimePicker extends WheelPicker {
         this.minuteLabel = minuteLabel;
     }
 
+    /**
+     * 设置秒的显示单位
+     */
+    public void setSecondLabel(String secondLabel) {
+        this.secondLabel = secondLabel;
+    }
+
     /**
      * 设置默认选中的年月日时分
      */
@@ -296,6 +386,16 @@ public class DateTimePicker extends WheelPicker {
         }
     }
 
+    /**
+     * 设置默认选中的秒
+     */
+    public void setSelectedSecond(int second) {
+        if (timeMode == NONE) {
+            throw new IllegalArgumentException("Time mode invalid");
+        }
+        selectedSecond = DateUtils.fillZero(second);
+    }
+
     /**
      * 设置默认选中的年月时分或者月日时分
      */
@@ -305,7 +405,7 @@ public class DateTimePicker extends WheelPicker {
         }
         if (dateMode == MONTH_DAY) {
             LogUtils.verbose(this, "change months and days while set selected");
-            int year = Calendar.getInstance(Locale.CHINA).get(Calendar.YEAR);
+            int year = now().get(Calendar.YEAR);
             startYear = endYear = year;
             changeMonthData(year);
             changeDayData(year, yearOrMonth);
@@ -375,6 +475,16 @@ public class DateTimePicker extends WheelPicker {
         return "";
     }
 
+    /**
+     * 选中的秒，未显示秒时返回空字符串
+     */
+    public String getSelectedSecond() {
+        if (timeMode != NONE && secondVisible) {
+            return selectedSecond;
+        }
+        return "";
+    }
+
     @NonNull
     @Override
     protected View makeCenterView() {
@@ -394,7 +504,7 @@ public class DateTimePicker extends WheelPicker {
             if (dateMode == YEAR_MONTH_DAY) {
                 selectedYear = DateUtils.trimZero(getSelectedYear());
             } else {
-                selectedYear = Calendar.getInstance(Locale.CHINA).get(Calendar.YEAR);
+                selectedYear = now().get(Calendar.YEAR);
             }
             int selectedMonth = DateUtils.trimZero(getSelectedMonth());
             changeDayData(selectedYear, selectedMonth);
@@ -402,11 +512,18 @@ public class DateTimePicker extends WheelPicker {
         if (timeMode != NONE && hours.size() == 0) {
             LogUtils.verbose(this, "init hours before make view");
             initHourData();
+        } else if (timeMode != NONE && availability != null) {
+            LogUtils.verbose(this, "change hours after days ready");
+            changeHourData();
         }
         if (timeMode != NONE && minutes.size() == 0) {
             LogUtils.verbose(this, "init minutes before make view");
             changeMinuteData(DateUtils.trimZero(selectedHour));
         }
+        if (timeMode != NONE && secondVisible && seconds.size() == 0) {
+            LogUtils.verbose(this, "init seconds before make view");
+            changeSecondData(DateUtils.trimZero(selectedHour), DateUtils.trimZero(selectedMinute));
+        }
 
         LinearLayout layout = new LinearLayout(activity);
         layout.setOrientation(LinearLayout.HORIZONTAL);
@@ -417,6 +534,7 @@ public class DateTimePicker extends WheelPicker {
         final WheelView dayView = createWheelView();
         final WheelView hourView = createWheelView();
         final WheelView minuteView = createWheelView();
+        final WheelView secondView = createWheelView();
 
         if (dateMode == YEAR_MONTH_DAY || dateMode == YEAR_MONTH) {
             yearView.setLayoutParams(new LinearLayout.LayoutParams(0, WRAP_CONTENT, 1.0f));
@@ -441,11 +559,11 @@ public class DateTimePicker extends WheelPicker {
                     if (onWheelListener != null) {
                         onWheelListener.onMonthWheeled(selectedMonthIndex, months.get(selectedMonthIndex));
                     }
-                    changeDayData(selectedYear, DateUtils.trimZero(months.get(selectedMonthIndex)));
-                    dayView.setItems(days, selectedDayIndex);
+                    changeDayWheel(dayView, selectedYear, DateUtils.trimZero(months.get(selectedMonthIndex)));
                     if (onWheelListener != null) {
                         onWheelListener.onDayWheeled(selectedDayIndex, days.get(selectedDayIndex));
                     }
+                    refreshTimeWheelsIfNeed(hourView, minuteView, secondView);
                 }
             });
             layout.addView(yearView);
@@ -477,13 +595,13 @@ public class DateTimePicker extends WheelPicker {
                         if (dateMode == YEAR_MONTH_DAY) {
                             selectedYear = DateUtils.trimZero(getSelectedYear());
                         } else {
-                            selectedYear = Calendar.getInstance(Locale.CHINA).get(Calendar.YEAR);
+                            selectedYear = now().get(Calendar.YEAR);
                         }
-                        changeDayData(selectedYear, DateUtils.trimZero(selectedMonthStr));
-                        dayView.setItems(days, selectedDayIndex);
+                        changeDayWheel(dayView, selectedYear, DateUtils.trimZero(selectedMonthStr));
                         if (onWheelListener != null) {
                             onWheelListener.onDayWheeled(selectedDayIndex, days.get(selectedDayIndex));
                         }
+                        refreshTimeWheelsIfNeed(hourView, minuteView, secondView);
                     }
                 }
             });
@@ -506,6 +624,7 @@ public class DateTimePicker extends WheelPicker {
                     if (onWheelListener != null) {
                         onWheelListener.onDayWheeled(selectedDayIndex, days.get(selectedDayIndex));
                     }
+                    refreshTimeWheelsIfNeed(hourView, minuteView, secondView);
                 }
             });
             layout.addView(dayView);
@@ -530,6 +649,10 @@ public class DateTimePicker extends WheelPicker {
                     LogUtils.verbose(this, "change minutes after hour wheeled");
                     changeMinuteData(DateUtils.trimZero(selectedHour));
                     minuteView.setItems(minutes, selectedMinute);
+                    if (secondVisible) {
+                        changeSecondData(DateUtils.trimZero(selectedHour), DateUtils.trimZero(selectedMinute));
+                        secondView.setItems(seconds, selectedSecond);
+                    }
                 }
             });
             layout.addView(hourView);
@@ -549,6 +672,11 @@ public class DateTimePicker extends WheelPicker {
                     if (onWheelListener != null) {
                         onWheelListener.onMinuteWheeled(index, selectedMinute);
                     }
+                    if (secondVisible) {
+                        LogUtils.verbose(this, "change seconds after minute wheeled");
+                        changeSecondData(DateUtils.trimZero(selectedHour), DateUtils.trimZero(selectedMinute));
+                        secondView.setItems(seconds, selectedSecond);
+                    }
                 }
             });
             layout.addView(minuteView);
@@ -560,9 +688,91 @@ public class DateTimePicker extends WheelPicker {
             }
         }
 
+        if (timeMode != NONE && secondVisible) {
+            secondView.setLayoutParams(new LinearLayout.LayoutParams(0, WRAP_CONTENT, 1.0f));
+            secondView.setItems(seconds, selectedSecond);
+            secondView.setOnItemSelectListener(new WheelView.OnItemSelectListener() {
+                @Override
+                public void onSelected(int index) {
+                    selectedSecond = seconds.get(index);
+                    if (onWheelListener instanceof OnSecondWheelListener) {
+                        ((OnSecondWheelListener) onWheelListener).onSecondWheeled(index, selectedSecond);
+                    }
+                }
+            });
+            layout.addView(secondView);
+            if (!TextUtils.isEmpty(secondLabel)) {
+                TextView labelView = createLabelView();
+                labelView.setTextSize(textSize);
+                labelView.setText(secondLabel);
+                layout.addView(labelView);
+            }
+        }
+
         return layout;
     }
 
+    /**
+     * 年月变动后更新日子滚轮：日子不变则不做任何改动，否则只替换选项而不重新测量
+     */
+    private void changeDayWheel(WheelView dayView, int selectedYear, int selectedMonth) {
+        previousDays.clear();
+        previousDays.addAll(days);
+        changeDayData(selectedYear, selectedMonth);
+        if (days.equals(previousDays)) {
+            LogUtils.verbose(this, "days not changed, keep day wheel");
+            if (dayView.getSelectedIndex() != selectedDayIndex) {
+                dayView.setSelectedIndex(selectedDayIndex);
+            }
+            return;
+        }
+        dayView.updateItems(days, selectedDayIndex);
+    }
+
+    /**
+     * 日子变动后，可用的小时及分钟可能随之变动
+     */
+    private void refreshTimeWheelsIfNeed(WheelView hourView, WheelView minuteView, WheelView secondView) {
+        if (availability == null || timeMode == NONE) {
+            return;
+        }
+        LogUtils.verbose(this, "change hours and minutes after day wheeled");
+        changeHourData();
+        hourView.setItems(hours, selectedHour);
+        changeMinuteData(DateUtils.trimZero(selectedHour));
+        minuteView.setItems(minutes, selectedMinute);
+        if (secondVisible) {
+            changeSecondData(DateUtils.trimZero(selectedHour), DateUtils.trimZero(selectedMinute));
+            secondView.setItems(seconds, selectedSecond);
+        }
+    }
+
+    @Override
+    public void dismiss() {
+        super.dismiss();
+        if (!submitting) {
+            //下次弹出时重新读取当前时间，提交时要等提交完成后再重置
+            now = null;
+        }
+    }
+
+    @Override
+    protected void onSubmitClick() {
+        if (!isSelectedAvailable()) {
+            //所在范围全部不可用时滚轮仍显示了不可用的选项，不关闭弹窗也不提交
+            LogUtils.warn(this, "selected date time is unavailable, ignore submit");
+            return;
+        }
+        submitting = true;
+        try {
+            super.onSubmitClick();
+        } finally {
+            submitting = false;
+            //提交完成，下次弹出时重新读取当前时间
+            now = null;
+        }
+    }
+
     @Override
     protected void onSubmit() {
         if (onDateTimePickListener == null) {
@@ -629,7 +839,7 @@ public class DateTimePicker extends WheelPicker {
         }
         if (!resetWhileWheel) {
             if (dateMode == YEAR_MONTH_DAY || dateMode == YEAR_MONTH) {
-                int index = years.indexOf(DateUtils.fillZero(Calendar.getInstance().get(Calendar.YEAR)));
+                int index = years.indexOf(DateUtils.fillZero(now().get(Calendar.YEAR)));
                 if (index == -1) {
                     //当前设置的年份不在指定范围，则默认选中范围开始的年
                     selectedYearIndex = 0;
@@ -646,7 +856,7 @@ public class DateTimePicker extends WheelPicker {
             if (months.size() > selectedMonthIndex) {
                 preSelectMonth = months.get(selectedMonthIndex);
             } else {
-                preSelectMonth = DateUtils.fillZero(Calendar.getInstance().get(Calendar.MONTH) + 1);
+                preSelectMonth = DateUtils.fillZero(now().get(Calendar.MONTH) + 1);
             }
             LogUtils.verbose(this, "preSelectMonth=" + preSelectMonth);
         }
@@ -677,6 +887,21 @@ public class DateTimePicker extends WheelPicker {
                 months.add(DateUtils.fillZero(i));
             }
         }
+        if (availability != null) {
+            ArrayList<String> availableMonths = new ArrayList<>(months.size());
+            for (String month : months) {
+                if (isMonthAvailable(selectedYear, DateUtils.trimZero(month))) {
+                    availableMonths.add(month);
+                }
+            }
+            if (availableMonths.size() == 0) {
+                //该年没有可用的月份，仍显示全部月份以免滚轮为空，提交时再拒绝
+                LogUtils.warn(this, "no available month in " + selectedYear);
+            } else {
+                months.clear();
+                months.addAll(availableMonths);
+            }
+        }
         if (!resetWhileWheel) {
             //当前设置的月份不在指定范围，则默认选中范围开始的月份
             int preSelectMonthIndex = months.indexOf(preSelectMonth);
@@ -696,30 +921,28 @@ public class DateTimePicker extends WheelPicker {
                 //年或月变动时，保持之前选择的日不动
                 preSelectDay = days.get(selectedDayIndex);
             } else {
-                preSelectDay = DateUtils.fillZero(Calendar.getInstance().get(Calendar.DAY_OF_MONTH));
+                preSelectDay = DateUtils.fillZero(now().get(Calendar.DAY_OF_MONTH));
             }
             LogUtils.verbose(this, "maxDays=" + maxDays + ", preSelectDay=" + preSelectDay);
         }
         days.clear();
-        if (selectedYear == startYear && selectedMonth == startMonth
-                && selectedYear == endYear && selectedMonth == endMonth) {
-            //开始年月及结束年月相同情况
-            for (int i = startDay; i <= endDay; i++) {
-                days.add(DateUtils.fillZero(i));
-            }
-        } else if (selectedYear == startYear && selectedMonth == startMonth) {
-            //开始年月相同情况
-            for (int i = startDay; i <= maxDays; i++) {
-                days.add(DateUtils.fillZero(i));
-            }
-        } else if (selectedYear == endYear && selectedMonth == endMonth) {
-            //结束年月相同情况
-            for (int i = 1; i <= endDay; i++) {
-                days.add(DateUtils.fillZero(i));
+        int lastDay = getLastDay(selectedYear, selectedMonth);
+        for (int i = getFirstDay(selectedYear, selectedMonth); i <= lastDay; i++) {
+            days.add(DateUtils.fillZero(i));
+        }
+        if (availability != null) {
+            ArrayList<String> availableDays = new ArrayList<>(days.size());
+            for (String day : days) {
+                if (isDayAvailable(selectedYear, selectedMonth, DateUtils.trimZero(day))) {
+                    availableDays.add(day);
+                }
             }
-        } else {
-            for (int i = 1; i <= maxDays; i++) {
-                days.add(DateUtils.fillZero(i));
+            if (availableDays.size() == 0) {
+                //该月没有可用的日子，仍显示全部日子以免滚轮为空，提交时再拒绝
+                LogUtils.warn(this, "no available day in " + selectedYear + "-" + selectedMonth);
+            } else {
+                days.clear();
+                days.addAll(availableDays);
             }
         }
         if (!resetWhileWheel) {
@@ -729,62 +952,285 @@ public class DateTimePicker extends WheelPicker {
         }
     }
 
+    private Calendar now() {
+        if (now == null) {
+            now = Calendar.getInstance();
+            now.setTimeInMillis(timeSource.currentTimeMillis());
+        }
+        return now;
+    }
+
+    /**
+     * 某年月在范围内的第一天
+     */
+    private int getFirstDay(int year, int month) {
+        return year == startYear && month == startMonth ? startDay : 1;
+    }
+
+    /**
+     * 某年月在范围内的最后一天
+     */
+    private int getLastDay(int year, int month) {
+        if (year == endYear && month == endMonth) {
+            return endDay;
+        }
+        return DateUtils.calculateDaysInMonth(year, month);
+    }
+
     private void initHourData() {
-        hours.clear();
-        int currentHour = 0;
         if (!resetWhileWheel) {
+            int currentHour;
             if (timeMode == HOUR_24) {
-                currentHour = Calendar.getInstance().get(Calendar.HOUR_OF_DAY);
+                currentHour = now().get(Calendar.HOUR_OF_DAY);
             } else {
-                currentHour = Calendar.getInstance().get(Calendar.HOUR);
+                currentHour = now().get(Calendar.HOUR);
+            }
+            if (currentHour >= startHour && currentHour <= endHour) {
+                selectedHour = DateUtils.fillZero(currentHour);
             }
         }
+        changeHourData();
+        if (!resetWhileWheel) {
+            selectedMinute = DateUtils.fillZero(now().get(Calendar.MINUTE));
+            selectedSecond = DateUtils.fillZero(now().get(Calendar.SECOND));
+        }
+    }
+
+    private void changeHourData() {
+        hours.clear();
         for (int i = startHour; i <= endHour; i++) {
-            String hour = DateUtils.fillZero(i);
-            if (!resetWhileWheel) {
-                if (i == currentHour) {
-                    selectedHour = hour;
+            hours.add(DateUtils.fillZero(i));
+        }
+        if (availability != null) {
+            int[] date = getSelectedDate();
+            ArrayList<String> availableHours = new ArrayList<>(hours.size());
+            for (String hour : hours) {
+                if (isHourAvailable(date[0], date[1], date[2], DateUtils.trimZero(hour))) {
+                    availableHours.add(hour);
                 }
             }
-            hours.add(hour);
+            if (availableHours.size() == 0) {
+                //该天没有可用的小时，仍显示全部小时以免滚轮为空，提交时再拒绝
+                LogUtils.warn(this, "no available hour in " + date[0] + "-" + date[1] + "-" + date[2]);
+            } else {
+                hours.clear();
+                hours.addAll(availableHours);
+            }
         }
         if (hours.indexOf(selectedHour) == -1) {
-            //当前设置的小时不在指定范围，则默认选中范围开始的小时
-            selectedHour = hours.get(0);
-        }
-        if (!resetWhileWheel) {
-            selectedMinute = DateUtils.fillZero(Calendar.getInstance().get(Calendar.MINUTE));
+            int hour = TextUtils.isEmpty(selectedHour) ? -1 : DateUtils.trimZero(selectedHour);
+            if (hour < startHour || hour > endHour) {
+                //当前设置的小时不在指定范围，则默认选中范围开始的小时
+                selectedHour = hours.get(0);
+            } else {
+                //当前设置的小时不可用，则选中最近的可用小时
+                selectedHour = findNearestItem(hours, hour);
+            }
         }
     }
 
     private void changeMinuteData(int selectedHour) {
+        if (startHour == endHour && startMinute > endMinute) {
+            int temp = startMinute;
+            startMinute = endMinute;
+            endMinute = temp;
+        }
+        int min = selectedHour == startHour ? startMinute : 0;
+        int max = selectedHour == endHour ? endMinute : 59;
+        selectedMinute = fillStepData(minutes, min, max, minuteStep, selectedMinute);
+        if (availability == null) {
+            return;
+        }
+        int[] date = getSelectedDate();
+        ArrayList<String> availableMinutes = new ArrayList<>(minutes.size());
+        for (String minute : minutes) {
+            if (isTimeAvailable(date[0], date[1], date[2], selectedHour, DateUtils.trimZero(minute))) {
+                availableMinutes.add(minute);
+            }
+        }
+        if (availableMinutes.size() == 0) {
+            //该小时没有可用的分钟，仍显示全部分钟以免滚轮为空，提交时再拒绝
+            LogUtils.warn(this, "no available minute in hour " + selectedHour);
+            return;
+        }
         minutes.clear();
-        if (startHour == endHour) {
-            if (startMinute > endMinute) {
-                int temp = startMinute;
-                startMinute = endMinute;
-                endMinute = temp;
+        minutes.addAll(availableMinutes);
+        selectedMinute = findNearestItem(minutes, DateUtils.trimZero(selectedMinute));
+    }
+
+    /**
+     * 当前选中的年月日，没有日子滚轮时年为0，此时只考虑每天的时段
+     */
+    private int[] getSelectedDate() {
+        int[] date = new int[3];
+        if ((dateMode == YEAR_MONTH_DAY || dateMode == MONTH_DAY) && days.size() > 0) {
+            if (dateMode == YEAR_MONTH_DAY) {
+                date[0] = DateUtils.trimZero(getSelectedYear());
+            } else {
+                date[0] = now().get(Calendar.YEAR);
             }
-            for (int i = startMinute; i <= endMinute; i++) {
-                minutes.add(DateUtils.fillZero(i));
+            date[1] = DateUtils.trimZero(getSelectedMonth());
+            date[2] = DateUtils.trimZero(getSelectedDay());
+        }
+        return date;
+    }
+
+    private boolean isTimeAvailable(int year, int month, int day, int hour, int minute) {
+        hour = toHourOfDay(hour);
+        if (year > 0) {
+            return availability.isAvailable(year, month, day, hour, minute);
+        }
+        return availability.isAvailable(hour, minute);
+    }
+
+    /**
+     * 可用时段按24小时制记录，12小时制的滚轮只有1-12点而没有上下午，
+     * 按当前时间所在的上午或下午换算，与默认选中的小时一致
+     */
+    private int toHourOfDay(int hour) {
+        if (timeMode != HOUR_12) {
+            return hour;
+        }
+        hour = hour % 12;//12点即0点
+        if (now().get(Calendar.AM_PM) == Calendar.PM) {
+            hour += 12;
+        }
+        return hour;
+    }
+
+    /**
+     * 某小时在范围内按步长的分钟中是否有可用的
+     */
+    private boolean isHourAvailable(int year, int month, int day, int hour) {
+        int min = hour == startHour ? startMinute : 0;
+        int max = hour == endHour ? endMinute : 59;
+        if (min > max) {
+            int temp = min;
+            min = max;
+            max = temp;
+        }
+        int first = (min + minuteStep - 1) / minuteStep * minuteStep;
+        if (first > max) {
+            return isTimeAvailable(year, month, day, hour, min);
+        }
+        for (int i = first; i <= max; i += minuteStep) {
+            if (isTimeAvailable(year, month, day, hour, i)) {
+                return true;
             }
-        } else if (selectedHour == startHour) {
-            for (int i = startMinute; i <= 59; i++) {
-                minutes.add(DateUtils.fillZero(i));
+        }
+        return false;
+    }
+
+    /**
+     * 某天是否可用，显示时分时还要求其中有可用的时段
+     */
+    private boolean isDayAvailable(int year, int month, int day) {
+        if (!availability.isAvailable(year, month, day)) {
+            return false;
+        }
+        if (timeMode == NONE) {
+            return true;
+        }
+        for (int i = startHour; i <= endHour; i++) {
+            if (isHourAvailable(year, month, day, i)) {
+                return true;
             }
-        } else if (selectedHour == endHour) {
-            for (int i = 0; i <= endMinute; i++) {
-                minutes.add(DateUtils.fillZero(i));
+        }
+        return false;
+    }
+
+    /**
+     * 某月在范围内是否有可用的日子
+     */
+    private boolean isMonthAvailable(int year, int month) {
+        int lastDay = getLastDay(year, month);
+        for (int i = getFirstDay(year, month); i <= lastDay; i++) {
+            if (isDayAvailable(year, month, i)) {
+                return true;
             }
-        } else {
-            for (int i = 0; i <= 59; i++) {
-                minutes.add(DateUtils.fillZero(i));
+        }
+        return false;
+    }
+
+    /**
+     * 当前选中的日期时间是否可用
+     */
+    private boolean isSelectedAvailable() {
+        if (availability == null) {
+            return true;
+        }
+        if (dateMode == YEAR_MONTH) {
+            int year = DateUtils.trimZero(getSelectedYear());
+            if (!isMonthAvailable(year, DateUtils.trimZero(getSelectedMonth()))) {
+                return false;
             }
         }
-        if (minutes.indexOf(selectedMinute) == -1) {
-            //当前设置的分钟不在指定范围，则默认选中范围开始的分钟
-            selectedMinute = minutes.get(0);
+        int[] date = getSelectedDate();
+        if (timeMode == NONE) {
+            return date[0] == 0 || availability.isAvailable(date[0], date[1], date[2]);
         }
+        int hour = DateUtils.trimZero(selectedHour);
+        int minute = DateUtils.trimZero(selectedMinute);
+        return isTimeAvailable(date[0], date[1], date[2], hour, minute);
+    }
+
+    private void changeSecondData(int selectedHour, int selectedMinute) {
+        int min = 0, max = 59;
+        if (selectedHour == startHour && selectedMinute == startMinute) {
+            min = startSecond;
+        }
+        if (selectedHour == endHour && selectedMinute == endMinute) {
+            max = endSecond;
+        }
+        if (min > max) {
+            int temp = min;
+            min = max;
+            max = temp;
+        }
+        selectedSecond = fillStepData(seconds, min, max, secondStep, selectedSecond);
+    }
+
+    /**
+     * 按步长生成[min,max]范围内的分或秒，步长从整点对齐（如步长15得00、15、30、45），
+     * 返回钳制到范围内最近一档的选中项
+     */
+    private String fillStepData(ArrayList<String> items, int min, int max, int step, String selected) {
+        items.clear();
+        //范围起点向上取整到步长的整数倍
+        int first = (min + step - 1) / step * step;
+        if (first > max) {
+            //范围内不存在步长整数倍的值，退化为只显示范围起点
+            items.add(DateUtils.fillZero(min));
+            return items.get(0);
+        }
+        for (int i = first; i <= max; i += step) {
+            items.add(DateUtils.fillZero(i));
+        }
+        if (TextUtils.isEmpty(selected)) {
+            //当前未设置选中项，则默认选中范围开始的一档
+            return items.get(0);
+        }
+        int index = Math.round((DateUtils.trimZero(selected) - first) / (float) step);
+        index = Math.max(0, Math.min(index, items.size() - 1));
+        return items.get(index);
+    }
+
+    /**
+     * 在补零后的有序数字列表中折半查找最接近的一项
+     */
+    private String findNearestItem(ArrayList<String> items, int value) {
+        int index = Collections.binarySearch(items, DateUtils.fillZero(value));
+        if (index >= 0) {
+            return items.get(index);
+        }
+        index = -index - 1;//插入点，取前后两项中较近的一项
+        if (index == items.size()) {
+            return items.get(index - 1);
+        }
+        if (index > 0 && value - DateUtils.trimZero(items.get(index - 1)) <= DateUtils.trimZero(items.get(index)) - value) {
+            return items.get(index - 1);
+        }
+        return items.get(index);
     }
 
     public interface OnWheelListener {
@@ -801,6 +1247,17 @@ public class DateTimePicker extends WheelPicker {
 
     }
 
+    /**
+     * 显示秒时，实现此接口可额外监听秒的滑动
+     *
+     * @see #setSecondVisible(boolean)
+     */
+    public interface OnSecondWheelListener extends OnWheelListener {
+
+        void onSecondWheeled(int index, String second);
+
+    }
+
     protected interface OnDateTimePickListener {
 
     }
@@ -197,6 +197,38 @@ public class WheelView extends View {
 
 
     public final void setItems(List<?> items) {
+        fillItems(items);
+        remeasure();
+        invalidate();
+    }
+
+    /**
+     * 仅替换选项而不重新测量，并保持当前的滚动位置，选中项超出范围时取最后一项。
+     * 适用于选项宽度不变而个数变化的情况，如日子由31天变为28天。
+     */
+    public final void updateItems(List<?> items, int index) {
+        if (itemHeight <= 0 || this.items.isEmpty()) {
+            //尚未测量过
+            setItems(items, index);
+            return;
+        }
+        cancelFuture();
+        fillItems(items);
+        if (index >= this.items.size()) {
+            index = this.items.size() - 1;
+        }
+        if (index < 0) {
+            index = 0;
+        }
+        //以选中项为新的起点，只保留不足一项的滚动偏移，避免选项个数变化后循环取模造成跳动
+        initPosition = index;
+        selectedIndex = index;
+        preCurrentIndex = index;
+        totalScrollY = totalScrollY % itemHeight;
+        invalidate();
+    }
+
+    private void fillItems(List<?> items) {
         this.items.clear();
         for (Object item : items) {
             if (item instanceof WheelItem) {
@@ -207,8 +239,6 @@ public class WheelView extends View {
                 throw new IllegalArgumentException("please implements " + WheelItem.class.getName());
             }
         }
-        remeasure();
-        invalidate();
     }
 
     public final void setItems(List<?> items, int index) {